@@ -1,7 +1,284 @@
+import main.collections.utils.BenchmarkResults;
+import main.collections.utils.BenchmarkResults.Result;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+
+/**
+ * Headless benchmark runner.
+ *
+ * Runs the scenarios of the "list", "map" and "set" packages without prompting, writes the results as JSON or CSV
+ * and optionally compares them against a stored baseline.
+ *
+ * Options:
+ * --packages list,map,set          packages to run (default: all)
+ * --scenarios fill,get             scenarios to run, unknown ones are skipped per package (default: all)
+ * --implementations ArrayList,...  implementations to measure (default: all)
+ * --sizes 10000,100000             seed sizes (default: 1000000)
+ * --output results.json            results file, ".csv" writes CSV, anything else JSON
+ * --baseline baseline.json         results of an earlier run with the same options to compare against
+ * --threshold 10                   allowed regression in percent (default: 10)
+ * --noise-ms 1                     elapsed time differences below this are ignored (default: 1)
+ *
+ * Unknown scenario or implementation names are rejected. Every baseline result of the selected packages and scenarios
+ * must be measured again, otherwise (or if nothing could be compared at all) the gate fails with a baseline mismatch.
+ *
+ * Exit codes: 0 - no regression, 1 - regression beyond the threshold, 2 - invalid arguments,
+ * 3 - a scenario failed (the remaining scenarios still run and their results are written),
+ * 4 - the results do not match the baseline (missing or duplicate results, nothing compared).
+ */
 public class Main {
+    private static final List<String> PACKAGES = Arrays.asList("list", "map", "set");
+    private static final List<String> OPTIONS = Arrays.asList("packages", "scenarios", "implementations", "sizes", "output",
+            "baseline", "threshold", "noise-ms");
+    private static final int DEFAULT_SIZE = 1000000;
+    private static final double DEFAULT_THRESHOLD = 10;
+    private static final double DEFAULT_NOISE_MS = 1;
+    private static final int REGRESSION = 1;
+    private static final int SCENARIO_FAILED = 3;
+    private static final int BASELINE_MISMATCH = 4;
 
     public static void main(String[] args) {
-        System.out.println("Hello World!");
+        Map<String, String> options;
+        try {
+            options = parseOptions(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.exit(2);
+            return;
+        }
+
+        try {
+            System.exit(run(options));
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.exit(2);
+        } catch (IOException e) {
+            System.err.println("I/O error: " + e.getMessage());
+            System.exit(2);
+        }
+    }
+
+    private static int run(Map<String, String> options) throws IOException {
+        List<String> packages = list(options.get("packages"), PACKAGES);
+        List<String> scenarios = list(options.get("scenarios"), null);
+        List<String> implementations = list(options.get("implementations"), null);
+        List<Integer> sizes = new ArrayList<>();
+        for (String size : list(options.get("sizes"), Collections.singletonList(String.valueOf(DEFAULT_SIZE)))) {
+            int n = Integer.parseInt(size);
+            if (n <= 0) {
+                throw new IllegalArgumentException("Sizes must be positive: " + size);
+            }
+            sizes.add(n);
+        }
+        double threshold = Double.parseDouble(options.getOrDefault("threshold", String.valueOf(DEFAULT_THRESHOLD)));
+        double noiseMs = Double.parseDouble(options.getOrDefault("noise-ms", String.valueOf(DEFAULT_NOISE_MS)));
+
+        for (String p : packages) {
+            if (!PACKAGES.contains(p)) {
+                throw new IllegalArgumentException("Unknown package: " + p);
+            }
+        }
+        requireKnown("scenario", scenarios, Main::scenarios);
+        requireKnown("implementation", implementations, Main::implementations);
+
+        Predicate<String> selected = implementations == null ? title -> true : implementations::contains;
+        List<Result> results = new ArrayList<>();
+        boolean failed = false;
+
+        for (String p : packages) {
+            for (String scenario : scenarios(p)) {
+                if (scenarios != null && !scenarios.contains(scenario)) {
+                    continue;
+                }
+
+                for (int size : sizes) {
+                    BenchmarkResults.begin(p, scenario, size);
+                    try {
+                        runScenario(p, scenario, selected, size);
+                    } catch (RuntimeException e) {
+                        failed = true;
+                        System.err.println("Scenario " + p + "/" + scenario + " (size " + size + ") failed:");
+                        e.printStackTrace();
+                    } finally {
+                        results.addAll(BenchmarkResults.drain());
+                    }
+                }
+            }
+        }
+
+        if (options.containsKey("output")) {
+            BenchmarkResults.write(new File(options.get("output")), results);
+            System.out.println("Results written to " + options.get("output"));
+        }
+
+        int status = 0;
+        if (options.containsKey("baseline")) {
+            List<Result> baseline = new ArrayList<>();
+            for (Result r : BenchmarkResults.read(new File(options.get("baseline")))) {
+                if (packages.contains(r.getPackage()) && (scenarios == null || scenarios.contains(r.getScenario()))) {
+                    baseline.add(r);
+                }
+            }
+            status = compare(results, baseline, threshold, noiseMs * 1000000);
+        }
+
+        return failed ? SCENARIO_FAILED : status;
+    }
+
+    /**
+     * Prints every result that got worse than the baseline by more than "threshold" percent,
+     * and every baseline result that was not measured again.
+     * Returns the exit code: BASELINE_MISMATCH before REGRESSION before 0.
+     */
+    private static int compare(List<Result> results, List<Result> baseline, double threshold, double noiseNanos) {
+        Map<String, Result> previous = byKey(baseline, "baseline");
+        Map<String, Result> current = byKey(results, "current run");
+        if (previous == null || current == null) {
+            return BASELINE_MISMATCH;
+        }
+
+        boolean mismatch = false;
+        for (String key : previous.keySet()) {
+            if (!current.containsKey(key)) {
+                mismatch = true;
+                System.out.println("MISSING " + key + ": in the baseline, but not measured");
+            }
+        }
+
+        boolean regression = false;
+        int compared = 0;
+        for (Result r : results) {
+            Result base = previous.get(r.getKey());
+            if (base == null) {
+                System.out.println("NEW " + r.getKey() + ": not in the baseline");
+                continue;
+            }
+            if (base.getValue() == 0) {
+                continue;
+            }
+            compared++;
+
+            double change = (r.getValue() - base.getValue()) / base.getValue() * 100;
+            double worse = r.isHigherBetter() ? -change : change;
+            boolean noise = BenchmarkResults.ELAPSED.equals(r.getMetric()) && Math.abs(r.getValue() - base.getValue()) < noiseNanos;
+
+            if (worse > threshold && !noise) {
+                regression = true;
+                System.out.printf("REGRESSION %s: %.0f -> %.0f (%+.1f%%)%n", r.getKey(), base.getValue(), r.getValue(), change);
+            }
+        }
+
+        System.out.println("Compared " + compared + " results against the baseline, " + (regression ? "regressions found" : "no regressions"));
+        if (compared == 0) {
+            System.out.println("Nothing was compared, check that the run uses the same options as the baseline");
+            return BASELINE_MISMATCH;
+        }
+        if (mismatch) {
+            return BASELINE_MISMATCH;
+        }
+        return regression ? REGRESSION : 0;
+    }
+
+    /**
+     * Returns null (after printing them) if some results share a key.
+     */
+    private static Map<String, Result> byKey(List<Result> results, String source) {
+        Map<String, Result> byKey = new LinkedHashMap<>();
+        boolean duplicates = false;
+        for (Result r : results) {
+            if (byKey.put(r.getKey(), r) != null) {
+                duplicates = true;
+                System.out.println("DUPLICATE " + r.getKey() + " in the " + source);
+            }
+        }
+
+        return duplicates ? null : byKey;
+    }
+
+    private static void requireKnown(String kind, List<String> names, Function<String, List<String>> known) {
+        if (names == null) {
+            return;
+        }
+
+        for (String name : names) {
+            boolean found = false;
+            for (String p : PACKAGES) {
+                found |= known.apply(p).contains(name);
+            }
+            if (!found) {
+                throw new IllegalArgumentException("Unknown " + kind + ": " + name);
+            }
+        }
     }
 
+    private static List<String> scenarios(String p) {
+        switch (p) {
+            case "list":
+                return main.collections.list.Main.SCENARIOS;
+            case "map":
+                return main.collections.map.Main.SCENARIOS;
+            default:
+                return main.collections.set.Main.SCENARIOS;
+        }
+    }
+
+    private static List<String> implementations(String p) {
+        switch (p) {
+            case "list":
+                return main.collections.list.Main.IMPLEMENTATIONS;
+            case "map":
+                return main.collections.map.Main.IMPLEMENTATIONS;
+            default:
+                return main.collections.set.Main.IMPLEMENTATIONS;
+        }
+    }
+
+    private static void runScenario(String p, String scenario, Predicate<String> implementations, int size) {
+        switch (p) {
+            case "list":
+                main.collections.list.Main.run(scenario, implementations, size);
+                break;
+            case "map":
+                main.collections.map.Main.run(scenario, implementations, size);
+                break;
+            default:
+                main.collections.set.Main.run(scenario, implementations, size);
+        }
+    }
+
+    private static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i < args.length; i++) {
+            if (!args[i].startsWith("--") || i + 1 >= args.length) {
+                throw new IllegalArgumentException("Expected --option value, got: " + args[i]);
+            }
+            String name = args[i].substring(2);
+            if (!OPTIONS.contains(name)) {
+                throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+            options.put(name, args[++i]);
+        }
+
+        return options;
+    }
+
+    private static List<String> list(String value, List<String> defaults) {
+        if (value == null) {
+            return defaults;
+        }
+
+        List<String> items = new ArrayList<>();
+        for (String item : value.split(",")) {
+            if (!item.trim().isEmpty()) {
+                items.add(item.trim());
+            }
+        }
+
+        return items;
+    }
 }
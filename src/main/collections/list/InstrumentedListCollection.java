@@ -0,0 +1,53 @@
+package main.collections.list;
+
+import java.util.List;
+import main.collections.utils.CollectionMetrics;
+import main.collections.utils.CollectionMetrics.Operation;
+
+
+/**
+ * ListCollection decorator that counts operations, samples their latency and emits JFR events
+ * for slow operations and resizes, see {@link CollectionMetrics}.
+ */
+public class InstrumentedListCollection extends ListCollection {
+    private final CollectionMetrics metrics;
+
+    InstrumentedListCollection(List<Person> list, String name) {
+        super(list);
+        this.metrics = new CollectionMetrics(name, list);
+    }
+
+    public CollectionMetrics getMetrics() {
+        return metrics;
+    }
+
+    @Override
+    public void setItem(Person item) {
+        long started = metrics.start(Operation.ADD);
+        super.setItem(item);
+        metrics.end(Operation.ADD, started);
+    }
+
+    @Override
+    public void setItem(Person item, int index) {
+        long started = metrics.start(Operation.INSERT);
+        super.setItem(item, index);
+        metrics.end(Operation.INSERT, started);
+    }
+
+    @Override
+    public Person getItem(int index) {
+        long started = metrics.start(Operation.GET);
+        Person item = super.getItem(index);
+        metrics.end(Operation.GET, started);
+
+        return item;
+    }
+
+    @Override
+    public void removeItem(int index) {
+        long started = metrics.start(Operation.REMOVE);
+        super.removeItem(index);
+        metrics.end(Operation.REMOVE, started);
+    }
+}
@@ -1,25 +1,60 @@
 package main.collections.list;
 
-import java.util.List;
+import java.util.*;
+import main.collections.utils.FlyweightPool;
+import main.collections.utils.ItemListener;
+import main.collections.utils.NamePool;
+import main.collections.utils.Query;
 
 
 public class ListCollection {
     private List<Person> items;
+    private NamePool names;
+    private FlyweightPool<Person> persons;
+    private ItemListener<Person> listener;
 
     ListCollection(List<Person> list) {
         this.items = list;
     }
 
+    /**
+     * Stored persons get their names interned through the pool.
+     */
+    ListCollection(List<Person> list, NamePool names) {
+        this.items = list;
+        this.names = names;
+    }
+
+    /**
+     * Stored persons are replaced by the shared (age, name) instance from the pool.
+     */
+    ListCollection(List<Person> list, FlyweightPool<Person> persons) {
+        this.items = list;
+        this.persons = persons;
+    }
+
     public List<Person> getItems() {
         return items;
     }
 
+    /**
+     * The listener is notified about every person stored or removed through this collection (including batch edits),
+     * changes made directly on "getItems()" are not seen.
+     */
+    public void setListener(ItemListener<Person> listener) {
+        this.listener = listener;
+    }
+
     public void setItem(Person item) {
-        items.add(item);
+        Person stored = store(item);
+        items.add(stored);
+        added(stored);
     }
 
     public void setItem(Person item, int index) {
-        items.add(index, item);
+        Person stored = store(item);
+        items.add(index, stored);
+        added(stored);
     }
 
     public Person getItem(int index) {
@@ -27,6 +62,258 @@ public class ListCollection {
     }
 
     public void removeItem(int index) {
-        items.remove(index);
+        removed(items.remove(index));
+    }
+
+    /**
+     * Applies a batch of positional edits in a single pass.
+     *
+     * Array backed lists are rebuilt into a fresh array once instead of shifting the tail on every edit,
+     * other lists are edited through one "ListIterator", so a LinkedList walks from the head only once.
+     */
+    public void applyEdits(ListEdits edits) {
+        List<ListEdits.Edit> sorted = edits.sorted(items.size());
+
+        if (items instanceof RandomAccess) {
+            rebuild(sorted);
+        } else {
+            walk(sorted);
+        }
+    }
+
+    public Query<Person> query() {
+        return Query.from(items);
+    }
+
+    private Person store(Person item) {
+        if (persons != null) {
+            return persons.get(item.getAge(), item.getName());
+        }
+        if (names != null) {
+            item.setName(names.intern(item.getName()));
+        }
+
+        return item;
+    }
+
+    private void added(Person item) {
+        if (listener != null) {
+            listener.onAdd(item);
+        }
+    }
+
+    private void removed(Person item) {
+        if (listener != null) {
+            listener.onRemove(item);
+        }
+    }
+
+    /**
+     * Sorts items by age (stable).
+     *
+     * Ages are packed together with the original position into a primitive "long" key column,
+     * which is sorted with "Arrays.parallelSort" and then written back in a single pass.
+     */
+    public void sortByAge() {
+        Person[] snapshot = toArray();
+        long[] keys = new long[snapshot.length];
+        for (int i = 0; i < snapshot.length; i++) {
+            keys[i] = ((long) snapshot[i].getAge() << 32) | i;
+        }
+
+        Arrays.parallelSort(keys);
+
+        Person[] sorted = new Person[snapshot.length];
+        for (int i = 0; i < keys.length; i++) {
+            sorted[i] = snapshot[(int) keys[i]];
+        }
+        writeBack(sorted);
+    }
+
+    /**
+     * Sorts items by name (stable), using "Arrays.parallelSort" over a copy of the items.
+     */
+    public void sortByName() {
+        Person[] snapshot = toArray();
+        Arrays.parallelSort(snapshot, Comparator.comparing(Person::getName));
+        writeBack(snapshot);
+    }
+
+    /**
+     * Returns the "k" oldest persons, oldest first.
+     */
+    public List<Person> topByAge(int k) {
+        return top(k, Comparator.comparingInt(Person::getAge));
+    }
+
+    /**
+     * Returns the "k" greatest items according to the comparator, greatest first.
+     *
+     * Uses a bounded min-heap, so it takes a single pass over the items and O(k) extra memory.
+     */
+    public List<Person> top(int k, Comparator<Person> comparator) {
+        if (k <= 0) {
+            return new ArrayList<>();
+        }
+
+        // The heap never holds more than min(k, size) persons, don't allocate for more.
+        PriorityQueue<Person> heap = new PriorityQueue<>(Math.max(1, Math.min(k, items.size())), comparator);
+        for (Person p : items) {
+            if (heap.size() < k) {
+                heap.add(p);
+            } else if (comparator.compare(p, heap.peek()) > 0) {
+                heap.poll();
+                heap.add(p);
+            }
+        }
+
+        List<Person> result = new ArrayList<>(heap);
+        result.sort(comparator.reversed());
+        return result;
+    }
+
+    /**
+     * Returns the age at the given percentile (0 - 100, nearest-rank), using quickselect over a primitive age column.
+     */
+    public int agePercentile(double percentile) {
+        if (items.isEmpty()) {
+            throw new NoSuchElementException("Collection is empty");
+        }
+        if (percentile < 0 || percentile > 100) {
+            throw new IllegalArgumentException("Percentile must be between 0 and 100: " + percentile);
+        }
+
+        int[] ages = new int[items.size()];
+        int i = 0;
+        for (Person p : items) {
+            ages[i++] = p.getAge();
+        }
+
+        int rank = (int) Math.ceil(percentile / 100 * ages.length);
+        return select(ages, Math.max(rank - 1, 0));
+    }
+
+    private void rebuild(List<ListEdits.Edit> sorted) {
+        Person[] snapshot = toArray();
+        Person[] result = new Person[snapshot.length + sorted.size()];
+        List<Person> removed = new ArrayList<>();
+        List<Person> added = new ArrayList<>();
+        int position = 0;
+        int size = 0;
+
+        for (ListEdits.Edit e : sorted) {
+            System.arraycopy(snapshot, position, result, size, e.index - position);
+            size += e.index - position;
+            position = e.index;
+
+            if (e.remove) {
+                removed.add(snapshot[position++]);
+            } else {
+                result[size] = store(e.item);
+                added.add(result[size++]);
+            }
+        }
+        System.arraycopy(snapshot, position, result, size, snapshot.length - position);
+        size += snapshot.length - position;
+
+        items.clear();
+        items.addAll(Arrays.asList(result).subList(0, size));
+        notifyEdits(removed, added);
+    }
+
+    private void walk(List<ListEdits.Edit> sorted) {
+        List<Person> added = new ArrayList<>();
+        for (ListEdits.Edit e : sorted) {
+            if (!e.remove) {
+                added.add(store(e.item));
+            }
+        }
+
+        List<Person> removed = new ArrayList<>();
+        Iterator<Person> stored = added.iterator();
+        ListIterator<Person> it = items.listIterator();
+        int position = 0;
+
+        for (ListEdits.Edit e : sorted) {
+            while (position < e.index) {
+                it.next();
+                position++;
+            }
+
+            if (e.remove) {
+                removed.add(it.next());
+                it.remove();
+                position++;
+            } else {
+                it.add(stored.next());
+            }
+        }
+        notifyEdits(removed, added);
+    }
+
+    /**
+     * Listeners only hear about a batch once it is fully applied, so they never see the list half edited.
+     */
+    private void notifyEdits(List<Person> removed, List<Person> added) {
+        for (Person p : removed) {
+            removed(p);
+        }
+        for (Person p : added) {
+            added(p);
+        }
+    }
+
+    private Person[] toArray() {
+        return items.toArray(new Person[0]);
+    }
+
+    private void writeBack(Person[] sorted) {
+        ListIterator<Person> it = items.listIterator();
+        for (Person p : sorted) {
+            it.next();
+            it.set(p);
+        }
+    }
+
+    /**
+     * Quickselect with a three-way partition, so long runs of equal ages do not degrade it to O(n^2).
+     */
+    private static int select(int[] a, int k) {
+        int lo = 0;
+        int hi = a.length - 1;
+        Random random = new Random(a.length);
+
+        while (lo < hi) {
+            int pivot = a[lo + random.nextInt(hi - lo + 1)];
+            int lt = lo;
+            int gt = hi;
+            int i = lo;
+
+            while (i <= gt) {
+                if (a[i] < pivot) {
+                    swap(a, lt++, i++);
+                } else if (a[i] > pivot) {
+                    swap(a, i, gt--);
+                } else {
+                    i++;
+                }
+            }
+
+            if (k < lt) {
+                hi = lt - 1;
+            } else if (k > gt) {
+                lo = gt + 1;
+            } else {
+                return pivot;
+            }
+        }
+
+        return a[lo];
+    }
+
+    private static void swap(int[] a, int i, int j) {
+        int tmp = a[i];
+        a[i] = a[j];
+        a[j] = tmp;
     }
 }
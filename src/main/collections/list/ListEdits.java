@@ -0,0 +1,66 @@
+package main.collections.list;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+
+/**
+ * Batch of positional inserts and removes, applied by {@link ListCollection#applyEdits(ListEdits)} in one sorted pass.
+ *
+ * All indices refer to positions in the list before the batch is applied:
+ * - insert(i, p) places "p" before the element that was at "i" (i == size appends),
+ * - remove(i) removes the element that was at "i".
+ * Several inserts at the same index keep the order they were added in.
+ */
+public class ListEdits {
+    private final List<Edit> edits = new ArrayList<>();
+
+    public ListEdits insert(int index, Person item) {
+        edits.add(new Edit(index, item, false));
+        return this;
+    }
+
+    public ListEdits remove(int index) {
+        edits.add(new Edit(index, null, true));
+        return this;
+    }
+
+    public int size() {
+        return edits.size();
+    }
+
+    /**
+     * Edits ordered by index, inserts before the remove at the same index. The sort is stable.
+     */
+    List<Edit> sorted(int listSize) {
+        List<Edit> sorted = new ArrayList<>(edits);
+        sorted.sort(Comparator.comparingInt((Edit e) -> e.index).thenComparing(e -> e.remove));
+
+        Edit previous = null;
+        for (Edit e : sorted) {
+            int max = e.remove ? listSize - 1 : listSize;
+            if (e.index < 0 || e.index > max) {
+                throw new IndexOutOfBoundsException("Index: " + e.index + ", Size: " + listSize);
+            }
+            if (e.remove && previous != null && previous.remove && previous.index == e.index) {
+                throw new IllegalArgumentException("Index removed twice: " + e.index);
+            }
+            previous = e;
+        }
+
+        return sorted;
+    }
+
+    static final class Edit {
+        final int index;
+        final Person item;
+        final boolean remove;
+
+        Edit(int index, Person item, boolean remove) {
+            this.index = index;
+            this.item = item;
+            this.remove = remove;
+        }
+    }
+}
@@ -1,12 +1,31 @@
 package main.collections.list;
 
 import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import main.collections.utils.BestOfRounds;
+import main.collections.utils.CollectionMetrics;
+import main.collections.utils.FlyweightPool;
 import main.collections.utils.MeasuringExecutionTimeKt;
+import main.collections.utils.NamePool;
+import main.collections.utils.ParallelScaling;
+import main.collections.utils.PersonStatistics;
 
 
 public class Main {
     private static final int COUNT = 1000000;
 
+    /**
+     * Scenario names accepted by {@link #run(String, Predicate, int)}.
+     */
+    public static final List<String> SCENARIOS = Arrays.asList("fill", "get", "remove-middle", "remove-end", "add-middle", "sort", "top", "query", "interning", "batch-edit", "parallel", "instrumented", "statistics");
+
+    private static int itemCount = COUNT;
+    private static Predicate<String> implementations = title -> true;
+
     /**
      * ArrayList:
      *
@@ -52,7 +71,15 @@ public class Main {
      */
     private static final String VECTOR = "Vector";
 
-    private static final String QUESTION_MESSAGE = "Enter collection test (fill - 1, get - 2, remove middle - 3, remove end - 4, add middle - 5): ";
+    /**
+     * Implementation names the scenarios can be filtered on (see {@link #run(String, Predicate, int)}).
+     */
+    public static final List<String> IMPLEMENTATIONS = Arrays.asList(ARRAY_LIST, LINKED_LIST, VECTOR);
+
+    private static final String QUESTION_MESSAGE = "Enter collection test (fill - 1, get - 2, remove middle - 3, remove end - 4, add middle - 5, sort - 6, top-k/percentile - 7, query - 8, interning - 9, batch edit - 10, parallel scaling - 11, instrumented - 12, statistics - 13): ";
+    private static final int TOP_K = 100;
+    private static final int DISTINCT_NAMES = 3000;
+    private static final int EDITS = 1000;
 
     public static void main(String[] args) {
         Scanner scanner = new Scanner(System.in);
@@ -75,6 +102,31 @@ public class Main {
                     break;
                 case 5:
                     addMiddleItemTest();
+                    break;
+                case 6:
+                    sortTest();
+                    break;
+                case 7:
+                    topTest();
+                    break;
+                case 8:
+                    queryTest();
+                    break;
+                case 9:
+                    interningTest();
+                    break;
+                case 10:
+                    batchEditTest();
+                    break;
+                case 11:
+                    parallelScalingTest();
+                    break;
+                case 12:
+                    instrumentedTest();
+                    break;
+                case 13:
+                    statisticsTest();
+                    break;
             }
 
             questionMessage();
@@ -83,6 +135,65 @@ public class Main {
         scanner.close();
     }
 
+    /**
+     * Runs a single scenario without prompting, for the headless runner.
+     * Only implementations (e.g. "ArrayList") accepted by the predicate are measured,
+     * "count" replaces the default seed size ("COUNT").
+     */
+    public static void run(String scenario, Predicate<String> implementations, int count) {
+        Main.implementations = implementations;
+        Main.itemCount = count;
+
+        try {
+            switch (scenario) {
+                case "fill":
+                    fillListTest();
+                    break;
+                case "get":
+                    getItemTest();
+                    break;
+                case "remove-middle":
+                    removeMiddleItemTest();
+                    break;
+                case "remove-end":
+                    removeEndItemTest();
+                    break;
+                case "add-middle":
+                    addMiddleItemTest();
+                    break;
+                case "sort":
+                    sortTest();
+                    break;
+                case "top":
+                    topTest();
+                    break;
+                case "query":
+                    queryTest();
+                    break;
+                case "interning":
+                    interningTest();
+                    break;
+                case "batch-edit":
+                    batchEditTest();
+                    break;
+                case "parallel":
+                    parallelScalingTest();
+                    break;
+                case "instrumented":
+                    instrumentedTest();
+                    break;
+                case "statistics":
+                    statisticsTest();
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown scenario: " + scenario);
+            }
+        } finally {
+            Main.implementations = title -> true;
+            Main.itemCount = COUNT;
+        }
+    }
+
     private static void fillListTest() {
         fillList(new ArrayList<>(), ARRAY_LIST);
         fillList(new LinkedList<>(), LINKED_LIST);
@@ -113,18 +224,83 @@ public class Main {
         addItemMiddle(new Vector<>(), VECTOR);
     }
 
+    private static void sortTest() {
+        sort(new ArrayList<>(), ARRAY_LIST);
+        sort(new LinkedList<>(), LINKED_LIST);
+        sort(new Vector<>(), VECTOR);
+    }
+
+    private static void topTest() {
+        top(new ArrayList<>(), ARRAY_LIST);
+        top(new LinkedList<>(), LINKED_LIST);
+        top(new Vector<>(), VECTOR);
+    }
+
+    private static void queryTest() {
+        query(new ArrayList<>(), ARRAY_LIST);
+        query(new LinkedList<>(), LINKED_LIST);
+        query(new Vector<>(), VECTOR);
+    }
+
+    private static void interningTest() {
+        // All variants fill an ArrayList.
+        if (skip(ARRAY_LIST)) {
+            return;
+        }
+
+        interning(new ListCollection(new ArrayList<>()), "Plain");
+
+        NamePool names = new NamePool();
+        interning(new ListCollection(new ArrayList<>(), names), "Interned names");
+        System.out.println("Names: " + names.size() + ", hits: " + names.getHits() + ", saved bytes: " + names.getSavedBytes() + "\n");
+
+        FlyweightPool<Person> persons = new FlyweightPool<>(Person::new);
+        interning(new ListCollection(new ArrayList<>(), persons), "Flyweight persons");
+        System.out.println("Persons: " + persons.size() + ", hits: " + persons.getHits() + ", saved bytes: " + persons.getSavedBytes() + "\n");
+    }
+
+    private static void batchEditTest() {
+        batchEdit(new ArrayList<>(), ARRAY_LIST);
+        batchEdit(new LinkedList<>(), LINKED_LIST);
+        batchEdit(new Vector<>(), VECTOR);
+    }
+
+    private static void parallelScalingTest() {
+        parallelScaling(new ArrayList<>(), ARRAY_LIST);
+        parallelScaling(new LinkedList<>(), LINKED_LIST);
+        parallelScaling(new Vector<>(), VECTOR);
+    }
+
+    private static void instrumentedTest() {
+        instrumented(ArrayList::new, ARRAY_LIST);
+        instrumented(LinkedList::new, LINKED_LIST);
+        instrumented(Vector::new, VECTOR);
+    }
+
+    private static void statisticsTest() {
+        statistics(Vector::new, VECTOR);
+    }
+
     private static void fillList(List<Person> list, String title) {
+        if (skip(title)) {
+            return;
+        }
+
         long time = MeasuringExecutionTimeKt.start(title);
         seedingList(list);
         MeasuringExecutionTimeKt.end(time);
     }
 
     private static void getItem(List<Person> list, String title) {
+        if (skip(title)) {
+            return;
+        }
+
         ListCollection l = seedingList(list);
 
         long time = MeasuringExecutionTimeKt.start(title);
 
-        int index = COUNT / 2;
+        int index = itemCount / 2;
         Person p = l.getItem(index);
         System.out.println("Person: " + p.getName());
 
@@ -132,40 +308,337 @@ public class Main {
     }
 
     private static void removeMiddleItem(List<Person> list, String title) {
+        if (skip(title)) {
+            return;
+        }
+
         ListCollection l = seedingList(list);
 
         long time = MeasuringExecutionTimeKt.start(title);
 
-        int index = COUNT / 2;
+        int index = itemCount / 2;
         l.removeItem(index);
 
         MeasuringExecutionTimeKt.end(time);
     }
 
     private static void removeEndItem(List<Person> list, String title) {
+        if (skip(title)) {
+            return;
+        }
+
         ListCollection l = seedingList(list);
 
         long time = MeasuringExecutionTimeKt.start(title);
 
-        l.removeItem(COUNT);
+        l.removeItem(itemCount);
 
         MeasuringExecutionTimeKt.end(time);
     }
 
     private static void addItemMiddle(List<Person> list, String title) {
+        if (skip(title)) {
+            return;
+        }
+
         ListCollection l = seedingList(list);
 
         long time = MeasuringExecutionTimeKt.start(title);
 
-        int index = COUNT / 2;
+        int index = itemCount / 2;
         l.setItem(new Person(25, "Name 4"), index);
 
         MeasuringExecutionTimeKt.end(time);
     }
 
+    private static void sort(List<Person> list, String title) {
+        if (skip(title)) {
+            return;
+        }
+
+        ListCollection l = seedingList(list);
+
+        long time = MeasuringExecutionTimeKt.start(title + " (copy)");
+        l.getItems().toArray(new Person[0]);
+        MeasuringExecutionTimeKt.end(time);
+
+        time = MeasuringExecutionTimeKt.start(title + " (sort by age)");
+        l.sortByAge();
+        MeasuringExecutionTimeKt.end(time);
+
+        time = MeasuringExecutionTimeKt.start(title + " (sort by name)");
+        l.sortByName();
+        MeasuringExecutionTimeKt.end(time);
+    }
+
+    private static void top(List<Person> list, String title) {
+        if (skip(title)) {
+            return;
+        }
+
+        ListCollection l = seedingList(list);
+
+        long time = MeasuringExecutionTimeKt.start(title + " (top " + TOP_K + " by age)");
+        List<Person> top = l.topByAge(TOP_K);
+        System.out.println("Oldest: " + top.get(0).getName() + ", " + top.get(0).getAge());
+        MeasuringExecutionTimeKt.end(time);
+
+        time = MeasuringExecutionTimeKt.start(title + " (p99 age)");
+        System.out.println("p99 age: " + l.agePercentile(99));
+        MeasuringExecutionTimeKt.end(time);
+    }
+
+    private static void query(List<Person> list, String title) {
+        if (skip(title)) {
+            return;
+        }
+
+        ListCollection l = seedingList(list);
+
+        long time = MeasuringExecutionTimeKt.start(title + " (loop)");
+        long sum = 0;
+        Map<String, Long> names = new HashMap<>();
+        for (Person p : l.getItems()) {
+            if (p.getAge() > 25) {
+                sum += p.getAge();
+            }
+            names.merge(p.getName(), 1L, Long::sum);
+        }
+        System.out.println("Sum: " + sum + ", names: " + names.size());
+        MeasuringExecutionTimeKt.end(time);
+
+        time = MeasuringExecutionTimeKt.start(title + " (stream)");
+        sum = l.getItems().stream().filter(p -> p.getAge() > 25).mapToInt(Person::getAge).sum();
+        names = l.getItems().stream().collect(Collectors.groupingBy(Person::getName, Collectors.counting()));
+        System.out.println("Sum: " + sum + ", names: " + names.size());
+        MeasuringExecutionTimeKt.end(time);
+
+        time = MeasuringExecutionTimeKt.start(title + " (parallel stream)");
+        sum = l.getItems().parallelStream().filter(p -> p.getAge() > 25).mapToInt(Person::getAge).sum();
+        names = l.getItems().parallelStream().collect(Collectors.groupingBy(Person::getName, Collectors.counting()));
+        System.out.println("Sum: " + sum + ", names: " + names.size());
+        MeasuringExecutionTimeKt.end(time);
+
+        time = MeasuringExecutionTimeKt.start(title + " (query)");
+        sum = l.query().filter(p -> p.getAge() > 25).mapToInt(Person::getAge).sum();
+        names = l.query().countBy(Person::getName);
+        System.out.println("Sum: " + sum + ", names: " + names.size());
+        MeasuringExecutionTimeKt.end(time);
+
+        time = MeasuringExecutionTimeKt.start(title + " (parallel query)");
+        sum = l.query().parallel().filter(p -> p.getAge() > 25).mapToInt(Person::getAge).sum();
+        names = l.query().parallel().countBy(Person::getName);
+        System.out.println("Sum: " + sum + ", names: " + names.size());
+        MeasuringExecutionTimeKt.end(time);
+    }
+
+    /**
+     * Names are built per record, like payloads decoded from the wire, so every Person starts with its own String.
+     */
+    private static void interning(ListCollection l, String title) {
+        int total = itemCount * 3;
+        long heapBefore = usedHeap();
+
+        long time = MeasuringExecutionTimeKt.start(title);
+        long started = System.nanoTime();
+        for (int i = 0; i < total; i++) {
+            l.setItem(new Person(18 + i % 60, "Name " + i % DISTINCT_NAMES));
+        }
+        long elapsed = System.nanoTime() - started;
+        MeasuringExecutionTimeKt.end(time);
+
+        long heap = usedHeap() - heapBefore;
+        System.out.println("Items: " + l.getItems().size() + ", retained heap: " + heap / 1024 + " KB, per insert: " + elapsed / total + " ns");
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        System.gc();
+        System.gc();
+
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    /**
+     * Half of the edits remove, half insert, spread over a window around the middle of the list.
+     * Per-call edits run from the highest index down, so the original indices stay valid.
+     * Small seed sizes shrink the window so it fits into the list.
+     */
+    private static void batchEdit(List<Person> list, String title) {
+        if (skip(title)) {
+            return;
+        }
+
+        ListCollection l = seedingList(list);
+        int size = l.getItems().size();
+        int pairs = Math.min(EDITS / 2, size / 4);
+        int middle = Math.min(size / 2, size - 4 * pairs);
+
+        long time = MeasuringExecutionTimeKt.start(title + " (per call)");
+        for (int k = pairs - 1; k >= 0; k--) {
+            l.setItem(new Person(25, "Name 4"), middle + 4 * k + 2);
+            l.removeItem(middle + 4 * k);
+        }
+        MeasuringExecutionTimeKt.end(time);
+
+        ListEdits edits = new ListEdits();
+        for (int k = 0; k < pairs; k++) {
+            edits.remove(middle + 4 * k);
+            edits.insert(middle + 4 * k + 2, new Person(25, "Name 4"));
+        }
+
+        time = MeasuringExecutionTimeKt.start(title + " (batched)");
+        l.applyEdits(edits);
+        MeasuringExecutionTimeKt.end(time);
+    }
+
+    private static void parallelScaling(List<Person> list, String title) {
+        if (skip(title)) {
+            return;
+        }
+
+        ListCollection l = seedingList(list);
+
+        ParallelScaling.run(title, l.getItems(), Person::getAge, Person::getName);
+    }
+
+    /**
+     * Fills a plain, a disabled and an enabled instrumented collection from the same seeded persons, see {@link BestOfRounds}.
+     */
+    private static void instrumented(Supplier<List<Person>> list, String title) {
+        if (skip(title)) {
+            return;
+        }
+
+        List<Person> persons = seedingList(new ArrayList<>()).getItems();
+        InstrumentedListCollection[] last = new InstrumentedListCollection[1];
+
+        long[] best = new BestOfRounds()
+                .add(title + " (plain)", fill(() -> new ListCollection(list.get()), persons))
+                .add(title + " (instrumented, disabled)", fill(() -> {
+                    CollectionMetrics.setEnabled(false);
+                    return new InstrumentedListCollection(list.get(), title);
+                }, persons))
+                .add(title + " (instrumented)", fill(() -> {
+                    CollectionMetrics.setEnabled(true);
+                    return last[0] = new InstrumentedListCollection(list.get(), title);
+                }, persons))
+                .measure();
+        CollectionMetrics.setEnabled(true);
+
+        BestOfRounds.printOverhead(best[0], best[1], best[2]);
+        System.out.println(last[0].getMetrics().report());
+    }
+
+    private static Supplier<Runnable> fill(Supplier<ListCollection> collection, List<Person> persons) {
+        return () -> {
+            ListCollection l = collection.get();
+            return () -> {
+                for (Person p : persons) {
+                    l.setItem(p);
+                }
+            };
+        };
+    }
+
+    /**
+     * Fills a thread-safe collection from 1, 2, 4 ... N writer threads, without and with live statistics,
+     * then compares reading the statistics with rescanning the items.
+     */
+    private static void statistics(Supplier<List<Person>> list, String title) {
+        if (skip(title)) {
+            return;
+        }
+
+        List<Person> persons = seedingList(new ArrayList<>()).getItems();
+        int maxWriters = Math.max(4, Runtime.getRuntime().availableProcessors());
+        PersonStatistics<Person> statistics = null;
+        ListCollection l = null;
+
+        for (int writers = 1; writers <= maxWriters; writers = ParallelScaling.nextWorkers(writers, maxWriters)) {
+            int n = writers;
+            AtomicReference<PersonStatistics<Person>> last = new AtomicReference<>();
+            ListCollection[] filled = new ListCollection[1];
+
+            long[] best = new BestOfRounds()
+                    .add(title + " (" + n + " writers)", concurrentFill(() -> new ListCollection(list.get()), persons, n))
+                    .add(title + " (" + n + " writers, statistics)", concurrentFill(() -> {
+                        filled[0] = new ListCollection(list.get());
+                        last.set(new PersonStatistics<>(Person::getAge, Person::getName));
+                        filled[0].setListener(last.get());
+                        return filled[0];
+                    }, persons, n))
+                    .measure();
+
+            System.out.printf("Overhead with %d writers: %.1f%%%n%n", n, BestOfRounds.overhead(best[0], best[1]));
+            statistics = last.get();
+            l = filled[0];
+        }
+
+        long started = System.nanoTime();
+        double average = statistics.averageAgeByName("Name 2");
+        long read = System.nanoTime() - started;
+
+        started = System.nanoTime();
+        long sum = 0;
+        long count = 0;
+        for (Person p : l.getItems()) {
+            if ("Name 2".equals(p.getName())) {
+                sum += p.getAge();
+                count++;
+            }
+        }
+        long rescan = System.nanoTime() - started;
+
+        System.out.println("Persons: " + statistics.count() + ", average age: " + statistics.averageAge()
+                + ", \"Name 2\" average age: " + average + " (rescan: " + (double) sum / count + ")");
+        System.out.println("Read: statistics " + read + " ns, rescan " + rescan + " ns\n");
+    }
+
+
+    /**
+     * One round splits the persons between "writers" threads, which start filling when the timed part begins.
+     */
+    private static Supplier<Runnable> concurrentFill(Supplier<ListCollection> collection, List<Person> persons, int writers) {
+        return () -> {
+            ListCollection l = collection.get();
+            CountDownLatch go = new CountDownLatch(1);
+            Thread[] threads = new Thread[writers];
+            for (int t = 0; t < writers; t++) {
+                List<Person> slice = persons.subList(persons.size() * t / writers, persons.size() * (t + 1) / writers);
+                threads[t] = new Thread(() -> {
+                    try {
+                        go.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                    for (Person p : slice) {
+                        l.setItem(p);
+                    }
+                });
+                threads[t].start();
+            }
+
+            return () -> {
+                go.countDown();
+                try {
+                    for (Thread thread : threads) {
+                        thread.join();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            };
+        };
+    }
+
     private static ListCollection seedingList(List<Person> list) {
-        ListCollection l = new ListCollection(list);
-        for (int i = 0; i < COUNT; i++) {
+        return seedingList(new ListCollection(list));
+    }
+
+    private static ListCollection seedingList(ListCollection l) {
+        for (int i = 0; i < itemCount; i++) {
             l.setItem(new Person(30, "Name 1"));
             l.setItem(new Person(22, "Name 2"));
             l.setItem(new Person(40, "Name 3"));
@@ -174,6 +647,10 @@ public class Main {
         return l;
     }
 
+    private static boolean skip(String title) {
+        return !implementations.test(title);
+    }
+
     private static void questionMessage() {
         System.out.println(QUESTION_MESSAGE);
     }
@@ -0,0 +1,46 @@
+package main.collections.map;
+
+import java.util.Map;
+import main.collections.utils.CollectionMetrics;
+import main.collections.utils.CollectionMetrics.Operation;
+
+
+/**
+ * MapCollection decorator that counts operations, samples their latency and emits JFR events
+ * for slow operations and resizes, see {@link CollectionMetrics}.
+ */
+public class InstrumentedMapCollection extends MapCollection {
+    private final CollectionMetrics metrics;
+
+    InstrumentedMapCollection(Map<String, Person> map, String name) {
+        super(map);
+        this.metrics = new CollectionMetrics(name, map);
+    }
+
+    public CollectionMetrics getMetrics() {
+        return metrics;
+    }
+
+    @Override
+    public void setItem(String key, Person item) {
+        long started = metrics.start(Operation.ADD);
+        super.setItem(key, item);
+        metrics.end(Operation.ADD, started);
+    }
+
+    @Override
+    public Person getItem(String key) {
+        long started = metrics.start(Operation.GET);
+        Person item = super.getItem(key);
+        metrics.end(Operation.GET, started);
+
+        return item;
+    }
+
+    @Override
+    public void removeItem(String key) {
+        long started = metrics.start(Operation.REMOVE);
+        super.removeItem(key);
+        metrics.end(Operation.REMOVE, started);
+    }
+}
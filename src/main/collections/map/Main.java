@@ -1,14 +1,36 @@
 package main.collections.map;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
-
+import java.util.concurrent.CountDownLatch;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import main.collections.utils.BenchmarkResults;
+import main.collections.utils.BestOfRounds;
+import main.collections.utils.CollectionMetrics;
+import main.collections.utils.CollidingKeys;
+import main.collections.utils.IncrementalRehashMap;
+import main.collections.utils.LatencyHistogram;
 import main.collections.utils.MeasuringExecutionTimeKt;
+import main.collections.utils.ParallelScaling;
+import main.collections.utils.SeededHashMap;
+import main.collections.utils.ShardedMap;
 
 
 public class Main {
     private static final int COUNT = 1000000;
 
+    /**
+     * Scenario names accepted by {@link #run(String, Predicate, int)}.
+     */
+    public static final List<String> SCENARIOS = Arrays.asList("fill", "order", "get", "remove", "query", "parallel", "collision", "instrumented", "put-latency", "sharded", "iterate-check");
+
+    private static int itemCount = COUNT;
+    private static Predicate<String> implementations = title -> true;
+
     /**
      * HashMap:
      *
@@ -98,7 +120,68 @@ public class Main {
      */
     private static final String CONCURRENT_HASH_MAP = "ConcurrentHashMap";
 
-    private static final String QUESTION_MESSAGE = "Enter collection test (fill - 1, show collection order - 2, get - 3, remove - 4): ";
+    /**
+     * SeededHashMap:
+     *
+     * Interfaces:                  Map
+     * Iteration Order:             no guarantee order, changes with every instance.
+     * Get/put remove containsKey:  O(1), also for keys with colliding hash codes
+     * Null values/keys:            only values
+     * Is synchronized:             implementation is not synchronized
+     * Implementation:              buckets, keys hashed with seeded SipHash-2-4
+     *
+     * Description:
+     * "HashMap" buckets keys by "hashCode()", so many keys with the same hash code end up in one (treeified) bin.
+     * This implementation ignores "hashCode()" and hashes keys with a random per-instance seed,
+     * so adversarial or near-identical keys still spread over all buckets.
+     */
+    private static final String SEEDED_HASH_MAP = "SeededHashMap";
+
+    /**
+     * IncrementalRehashMap:
+     *
+     * Interfaces:                  Map
+     * Iteration Order:             no guarantee order.
+     * Get/put remove containsKey:  O(1), no single put pays for a full rehash
+     * Null values/keys:            only values
+     * Is synchronized:             implementation is not synchronized (not even for concurrent readers)
+     * Implementation:              buckets, two tables while growing
+     *
+     * Description:
+     * When "HashMap" or "ConcurrentHashMap" grow, the put that crosses the threshold moves every entry into the doubled table.
+     * With millions of entries that single put takes milliseconds.
+     * This implementation only allocates the new table on that put and migrates a few old buckets on every following operation
+     * (like the Redis dictionaries), so the cost of the rehash is spread over many operations.
+     */
+    private static final String INCREMENTAL_REHASH_MAP = "IncrementalRehashMap";
+
+    /**
+     * ShardedMap:
+     *
+     * Interfaces:                  Map
+     * Iteration Order:             no guarantee order, entrySet is a snapshot.
+     * Get/put remove containsKey:  O(1) plus a hand-off to the owning thread
+     * Null values/keys:            only values
+     * Is synchronized:             thread-safe, every shard is only touched by its own worker thread
+     * Implementation:              one HashMap per shard, operations routed through lock-free queues
+     *
+     * Description:
+     * "ConcurrentHashMap" lets every thread write into the shared table, so writers on different cores
+     * contend on the same bins and cache lines. This implementation partitions the keys by hash,
+     * each partition has a single writer which drains queued operations in batches.
+     * A single synchronous call pays for the round trip to the owner, batching many keys per message amortizes it.
+     */
+    private static final String SHARDED_MAP = "ShardedMap";
+    private static final int SHARDED_BATCH = 64;
+    private static final int SHARDED_GET_PERCENT = 80;
+
+    /**
+     * Implementation names the scenarios can be filtered on (see {@link #run(String, Predicate, int)}).
+     */
+    public static final List<String> IMPLEMENTATIONS = Arrays.asList(HASH_MAP, LINKED_HASH_MAP, TREE_MAP, CONCURRENT_HASH_MAP,
+            SEEDED_HASH_MAP, INCREMENTAL_REHASH_MAP, SHARDED_MAP);
+
+    private static final String QUESTION_MESSAGE = "Enter collection test (fill - 1, show collection order - 2, get - 3, remove - 4, query - 5, parallel scaling - 6, collision - 7, instrumented - 8, put latency - 9, sharded - 10, iterate check - 11): ";
 
     public static void main(String[] args) {
         Scanner scanner = new Scanner(System.in);
@@ -120,6 +203,27 @@ public class Main {
                 case 4:
                     removeItemTest();
                     break;
+                case 5:
+                    queryTest();
+                    break;
+                case 6:
+                    parallelScalingTest();
+                    break;
+                case 7:
+                    collisionTest();
+                    break;
+                case 8:
+                    instrumentedTest();
+                    break;
+                case 9:
+                    putLatencyTest();
+                    break;
+                case 10:
+                    shardedTest();
+                    break;
+                case 11:
+                    iterateCheckTest();
+                    break;
             }
 
             questionMessage();
@@ -128,11 +232,66 @@ public class Main {
         scanner.close();
     }
 
+    /**
+     * Runs a single scenario without prompting, for the headless runner.
+     * Only implementations (e.g. "HashMap") accepted by the predicate are measured,
+     * "count" replaces the default seed size ("COUNT").
+     */
+    public static void run(String scenario, Predicate<String> implementations, int count) {
+        Main.implementations = implementations;
+        Main.itemCount = count;
+
+        try {
+            switch (scenario) {
+                case "fill":
+                    fillHashTest();
+                    break;
+                case "order":
+                    fillHashAndShowOrderTest();
+                    break;
+                case "get":
+                    getItemTest();
+                    break;
+                case "remove":
+                    removeItemTest();
+                    break;
+                case "query":
+                    queryTest();
+                    break;
+                case "parallel":
+                    parallelScalingTest();
+                    break;
+                case "collision":
+                    collisionTest();
+                    break;
+                case "instrumented":
+                    instrumentedTest();
+                    break;
+                case "put-latency":
+                    putLatencyTest();
+                    break;
+                case "sharded":
+                    shardedTest();
+                    break;
+                case "iterate-check":
+                    iterateCheckTest();
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown scenario: " + scenario);
+            }
+        } finally {
+            Main.implementations = title -> true;
+            Main.itemCount = COUNT;
+        }
+    }
+
     private static void fillHashTest() {
         fillList(new HashMap<String, Person>(), HASH_MAP);
         fillList(new LinkedHashMap<String, Person>(), LINKED_HASH_MAP);
         fillList(new TreeMap<String, Person>(), TREE_MAP);
         fillList(new ConcurrentHashMap<String, Person>(), CONCURRENT_HASH_MAP);
+        fillList(SeededHashMap.<Person>forStrings(), SEEDED_HASH_MAP);
+        fillList(new IncrementalRehashMap<String, Person>(), INCREMENTAL_REHASH_MAP);
     }
 
     private static void fillHashAndShowOrderTest() {
@@ -147,6 +306,14 @@ public class Main {
         getItem(new LinkedHashMap<String, Person>(), LINKED_HASH_MAP);
         getItem(new TreeMap<String, Person>(), TREE_MAP);
         getItem(new ConcurrentHashMap<String, Person>(), CONCURRENT_HASH_MAP);
+        getItem(SeededHashMap.<Person>forStrings(), SEEDED_HASH_MAP);
+        getItem(new IncrementalRehashMap<String, Person>(), INCREMENTAL_REHASH_MAP);
+    }
+
+    private static void iterateCheckTest() {
+        readsWhileIterating(HashMap::new, HASH_MAP);
+        readsWhileIterating(SeededHashMap::forStrings, SEEDED_HASH_MAP);
+        readsWhileIterating(IncrementalRehashMap::new, INCREMENTAL_REHASH_MAP);
     }
 
     private static void removeItemTest() {
@@ -154,9 +321,66 @@ public class Main {
         removeItem(new LinkedHashMap<String, Person>(), LINKED_HASH_MAP);
         removeItem(new TreeMap<String, Person>(), TREE_MAP);
         removeItem(new ConcurrentHashMap<String, Person>(), CONCURRENT_HASH_MAP);
+        removeItem(SeededHashMap.<Person>forStrings(), SEEDED_HASH_MAP);
+        removeItem(new IncrementalRehashMap<String, Person>(), INCREMENTAL_REHASH_MAP);
+    }
+
+    private static void queryTest() {
+        query(new HashMap<String, Person>(), HASH_MAP);
+        query(new LinkedHashMap<String, Person>(), LINKED_HASH_MAP);
+        query(new TreeMap<String, Person>(), TREE_MAP);
+        query(new ConcurrentHashMap<String, Person>(), CONCURRENT_HASH_MAP);
+    }
+
+    private static void parallelScalingTest() {
+        parallelScaling(new HashMap<String, Person>(), HASH_MAP);
+        parallelScaling(new LinkedHashMap<String, Person>(), LINKED_HASH_MAP);
+        parallelScaling(new TreeMap<String, Person>(), TREE_MAP);
+        parallelScaling(new ConcurrentHashMap<String, Person>(), CONCURRENT_HASH_MAP);
+    }
+
+    private static void collisionTest() {
+        collision(new HashMap<String, Person>(), HASH_MAP);
+        collision(SeededHashMap.<Person>forStrings(), SEEDED_HASH_MAP);
+    }
+
+    private static void instrumentedTest() {
+        instrumented(HashMap::new, HASH_MAP);
+        instrumented(LinkedHashMap::new, LINKED_HASH_MAP);
+        instrumented(TreeMap::new, TREE_MAP);
+        instrumented(ConcurrentHashMap::new, CONCURRENT_HASH_MAP);
+        instrumented(SeededHashMap::forStrings, SEEDED_HASH_MAP);
+        instrumented(IncrementalRehashMap::new, INCREMENTAL_REHASH_MAP);
+    }
+
+    private static void putLatencyTest() {
+        putLatency(new HashMap<String, Person>(), HASH_MAP);
+        putLatency(new ConcurrentHashMap<String, Person>(), CONCURRENT_HASH_MAP);
+        putLatency(new IncrementalRehashMap<String, Person>(), INCREMENTAL_REHASH_MAP);
+    }
+
+    private static void shardedTest() {
+        if (!skip(CONCURRENT_HASH_MAP)) {
+            mixedWorkload(new ConcurrentHashMap<String, Person>(), CONCURRENT_HASH_MAP, false);
+        }
+        if (skip(SHARDED_MAP)) {
+            return;
+        }
+
+        int shards = Math.max(2, Runtime.getRuntime().availableProcessors());
+        try (ShardedMap<String, Person> map = new ShardedMap<>(shards)) {
+            mixedWorkload(map, SHARDED_MAP + " (sync)", false);
+        }
+        try (ShardedMap<String, Person> map = new ShardedMap<>(shards)) {
+            mixedWorkload(map, SHARDED_MAP + " (batched)", true);
+        }
     }
 
     private static void fillList(Map<String, Person> map, String title) {
+        if (skip(title)) {
+            return;
+        }
+
         ListCollection l = seedingList(new ArrayList<>());
 
         long time = MeasuringExecutionTimeKt.start(title);
@@ -167,6 +391,10 @@ public class Main {
     }
 
     private static void fillShowOrderList(Map<String, Person> map, String title, int count) {
+        if (skip(title)) {
+            return;
+        }
+
         System.out.println("Start (" + title + "):");
         ListCollection l = seedingList(new ArrayList<>());
 
@@ -187,11 +415,15 @@ public class Main {
     }
 
     private static void getItem(Map<String, Person> map, String title) {
+        if (skip(title)) {
+            return;
+        }
+
         ListCollection l = seedingList(new ArrayList<>());
         MapCollection m = seedingMap(l, map);
 
         long time = MeasuringExecutionTimeKt.start(title);
-        for (int i = 0; i < COUNT; i++) {
+        for (int i = 0; i < itemCount; i++) {
             m.getItem("1");
             m.getItem("2");
             m.getItem("3");
@@ -202,13 +434,50 @@ public class Main {
         MeasuringExecutionTimeKt.end(time);
     }
 
+    /**
+     * Regression check: reads, updates of existing keys and removes of missing ones inside a loop over the entries
+     * must not make the loop skip entries or throw, also while the map is in the middle of a resize.
+     * Fails the scenario otherwise.
+     */
+    private static void readsWhileIterating(Supplier<Map<String, Person>> map, String title) {
+        if (skip(title)) {
+            return;
+        }
+
+        for (int count : new int[]{13, Math.max(13, Math.min(itemCount, 100000))}) {
+            Map<String, Person> m = map.get();
+            for (int i = 0; i < count; i++) {
+                m.put("k" + i, new Person(20, "Name - " + i));
+            }
+
+            int visited = 0;
+            for (Map.Entry<String, Person> e : m.entrySet()) {
+                m.get("k0");
+                m.containsKey(e.getKey());
+                m.put(e.getKey(), e.getValue());
+                m.remove("missing");
+                visited++;
+            }
+
+            if (visited != count) {
+                throw new IllegalStateException(title + ": iterated " + visited + " of " + count + " entries while reading");
+            }
+        }
+
+        System.out.println(title + ": reads while iterating ok\n");
+    }
+
     private static void removeItem(Map<String, Person> map, String title) {
+        if (skip(title)) {
+            return;
+        }
+
         ListCollection l = seedingList(new ArrayList<>());
         MapCollection m = seedingMap(l, map);
 
         long time = MeasuringExecutionTimeKt.start(title);
 
-        for (int i = 0; i < COUNT; i++) {
+        for (int i = 0; i < itemCount; i++) {
             m.removeItem("1");
             m.removeItem("2");
             m.removeItem("3");
@@ -221,9 +490,265 @@ public class Main {
         MeasuringExecutionTimeKt.end(time);
     }
 
+    private static void query(Map<String, Person> map, String title) {
+        if (skip(title)) {
+            return;
+        }
+
+        ListCollection l = seedingList(new ArrayList<>());
+        MapCollection m = seedingMap(l, map);
+
+        long time = MeasuringExecutionTimeKt.start(title + " (loop)");
+        long count = 0;
+        for (Person p : m.getItems().values()) {
+            if (p.getName().endsWith("7")) {
+                count++;
+            }
+        }
+        System.out.println("Count: " + count);
+        MeasuringExecutionTimeKt.end(time);
+
+        time = MeasuringExecutionTimeKt.start(title + " (stream)");
+        count = m.getItems().values().stream().filter(p -> p.getName().endsWith("7")).count();
+        System.out.println("Count: " + count);
+        MeasuringExecutionTimeKt.end(time);
+
+        time = MeasuringExecutionTimeKt.start(title + " (parallel stream)");
+        count = m.getItems().values().parallelStream().filter(p -> p.getName().endsWith("7")).count();
+        System.out.println("Count: " + count);
+        MeasuringExecutionTimeKt.end(time);
+
+        time = MeasuringExecutionTimeKt.start(title + " (query)");
+        count = m.query().filter(p -> p.getName().endsWith("7")).count();
+        System.out.println("Count: " + count);
+        MeasuringExecutionTimeKt.end(time);
+
+        time = MeasuringExecutionTimeKt.start(title + " (parallel query)");
+        count = m.query().parallel().filter(p -> p.getName().endsWith("7")).count();
+        System.out.println("Count: " + count);
+        MeasuringExecutionTimeKt.end(time);
+    }
+
+    private static void parallelScaling(Map<String, Person> map, String title) {
+        if (skip(title)) {
+            return;
+        }
+
+        ListCollection l = seedingList(new ArrayList<>());
+        MapCollection m = seedingMap(l, map);
+
+        ParallelScaling.run(title, m.getItems().values(), Person::getAge, Person::getName);
+    }
+
+    private static void collision(Map<String, Person> map, String title) {
+        if (skip(title)) {
+            return;
+        }
+
+        List<String> keys = CollidingKeys.generate(itemCount);
+        MapCollection m = new MapCollection(map);
+
+        long time = MeasuringExecutionTimeKt.start(title + " (put " + keys.size() + " colliding keys)");
+        long started = System.nanoTime();
+        for (String key : keys) {
+            m.setItem(key, new Person(20, key));
+        }
+        long elapsed = System.nanoTime() - started;
+        MeasuringExecutionTimeKt.end(time);
+        System.out.println("Average put: " + elapsed / keys.size() + " ns\n");
+
+        time = MeasuringExecutionTimeKt.start(title + " (get " + keys.size() + " colliding keys)");
+        started = System.nanoTime();
+        for (String key : keys) {
+            m.getItem(key);
+        }
+        elapsed = System.nanoTime() - started;
+        MeasuringExecutionTimeKt.end(time);
+        System.out.println("Average get: " + elapsed / keys.size() + " ns\n");
+    }
+
+    /**
+     * Fills and reads a plain, a disabled and an enabled instrumented map from the same seeded keys and persons,
+     * see {@link BestOfRounds}.
+     */
+    private static void instrumented(Supplier<Map<String, Person>> map, String title) {
+        if (skip(title)) {
+            return;
+        }
+
+        Map<String, Person> items = seedingMap(seedingList(new ArrayList<>()), new LinkedHashMap<>()).getItems();
+        InstrumentedMapCollection[] last = new InstrumentedMapCollection[1];
+
+        long[] best = new BestOfRounds()
+                .add(title + " (plain)", fillAndGet(() -> new MapCollection(map.get()), items))
+                .add(title + " (instrumented, disabled)", fillAndGet(() -> {
+                    CollectionMetrics.setEnabled(false);
+                    return new InstrumentedMapCollection(map.get(), title);
+                }, items))
+                .add(title + " (instrumented)", fillAndGet(() -> {
+                    CollectionMetrics.setEnabled(true);
+                    return last[0] = new InstrumentedMapCollection(map.get(), title);
+                }, items))
+                .measure();
+        CollectionMetrics.setEnabled(true);
+
+        BestOfRounds.printOverhead(best[0], best[1], best[2]);
+        System.out.println(last[0].getMetrics().report());
+    }
+
+    private static Supplier<Runnable> fillAndGet(Supplier<MapCollection> collection, Map<String, Person> items) {
+        return () -> {
+            MapCollection m = collection.get();
+            return () -> {
+                for (Map.Entry<String, Person> e : items.entrySet()) {
+                    m.setItem(e.getKey(), e.getValue());
+                }
+                for (String key : items.keySet()) {
+                    m.getItem(key);
+                }
+            };
+        };
+    }
+
+    /**
+     * Fills the map like "fill", but times every single put, so the puts that resize the table show up in the tail.
+     */
+    private static void putLatency(Map<String, Person> map, String title) {
+        if (skip(title)) {
+            return;
+        }
+
+        ListCollection l = seedingList(new ArrayList<>());
+        int count = l.getItems().size();
+        String[] keys = new String[count];
+        Person[] persons = new Person[count];
+        for (int i = 1; i < count; i++) {
+            keys[i] = String.valueOf(i);
+            persons[i] = new Person(20, "Name - " + i);
+        }
+
+        MapCollection m = new MapCollection(map);
+        LatencyHistogram latencies = new LatencyHistogram();
+        System.gc();
+
+        long time = MeasuringExecutionTimeKt.start(title);
+        for (int i = 1; i < count; i++) {
+            long started = System.nanoTime();
+            m.setItem(keys[i], persons[i]);
+            latencies.record(System.nanoTime() - started);
+        }
+        MeasuringExecutionTimeKt.end(time);
+
+        long p999 = latencies.percentile(99.9);
+        System.out.println("Put latency: p50 " + latencies.percentile(50) + " ns, p99 " + latencies.percentile(99)
+                + " ns, p99.9 " + p999 + " ns, max " + latencies.getMax() + " ns\n");
+        BenchmarkResults.record(title, "p999_ns", p999, false);
+        BenchmarkResults.record(title, "max_ns", latencies.getMax(), false);
+    }
+
+    /**
+     * Several client threads run a mix of gets and puts (SHARDED_GET_PERCENT gets) over random existing keys.
+     * "batched" sends SHARDED_BATCH operations per round trip to a ShardedMap (gets and puts of a batch are not ordered
+     * against each other), otherwise every operation is a single synchronous call.
+     */
+    private static void mixedWorkload(Map<String, Person> map, String title, boolean batched) {
+        int keyCount = Math.max(1, itemCount);
+        String[] keys = new String[keyCount];
+        Person[] persons = new Person[keyCount];
+        for (int i = 0; i < keyCount; i++) {
+            keys[i] = String.valueOf(i);
+            persons[i] = new Person(20, "Name - " + i);
+        }
+
+        MapCollection m = new MapCollection(map);
+        if (batched) {
+            Map<String, Person> seed = new HashMap<>();
+            for (int i = 0; i < keyCount; i++) {
+                seed.put(keys[i], persons[i]);
+            }
+            map.putAll(seed);
+        } else {
+            for (int i = 0; i < keyCount; i++) {
+                m.setItem(keys[i], persons[i]);
+            }
+        }
+
+        int clients = Math.max(2, Runtime.getRuntime().availableProcessors());
+        int operations = 2 * keyCount / clients;
+        CountDownLatch ready = new CountDownLatch(clients);
+        CountDownLatch go = new CountDownLatch(1);
+        Thread[] threads = new Thread[clients];
+        for (int t = 0; t < clients; t++) {
+            long seed = t;
+            threads[t] = new Thread(() -> {
+                SplittableRandom random = new SplittableRandom(seed);
+                ready.countDown();
+                try {
+                    go.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+
+                if (batched) {
+                    mixedBatches((ShardedMap<String, Person>) map, keys, persons, random, operations);
+                } else {
+                    for (int i = 0; i < operations; i++) {
+                        int k = random.nextInt(keyCount);
+                        if (random.nextInt(100) < SHARDED_GET_PERCENT) {
+                            m.getItem(keys[k]);
+                        } else {
+                            m.setItem(keys[k], persons[k]);
+                        }
+                    }
+                }
+            });
+            threads[t].start();
+        }
+
+        try {
+            ready.await();
+            long time = MeasuringExecutionTimeKt.start(title);
+            long started = System.nanoTime();
+            go.countDown();
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            long elapsed = System.nanoTime() - started;
+            MeasuringExecutionTimeKt.end(time);
+
+            double throughput = (double) operations * clients / elapsed * 1_000_000_000;
+            System.out.printf("%d clients: %.0f ops/s%n%n", clients, throughput);
+            BenchmarkResults.record(title, "ops_per_s", throughput, true);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void mixedBatches(ShardedMap<String, Person> map, String[] keys, Person[] persons,
+                                     SplittableRandom random, int operations) {
+        List<String> gets = new ArrayList<>(SHARDED_BATCH);
+        Map<String, Person> puts = new HashMap<>();
+        for (int i = 0; i < operations; i += SHARDED_BATCH) {
+            int batch = Math.min(SHARDED_BATCH, operations - i);
+            for (int j = 0; j < batch; j++) {
+                int k = random.nextInt(keys.length);
+                if (random.nextInt(100) < SHARDED_GET_PERCENT) {
+                    gets.add(keys[k]);
+                } else {
+                    puts.put(keys[k], persons[k]);
+                }
+            }
+
+            CompletableFuture.allOf(map.getAllAsync(gets), map.putAllAsync(puts)).join();
+            gets.clear();
+            puts.clear();
+        }
+    }
+
     private static ListCollection seedingList(List<Person> list) {
         ListCollection l = new ListCollection(list);
-        for (int i = 0; i < COUNT; i++) {
+        for (int i = 0; i < itemCount; i++) {
             l.setItem(new Person(30, "Name 1"));
             l.setItem(new Person(22, "Name 2"));
             l.setItem(new Person(40, "Name 3"));
@@ -246,6 +771,10 @@ public class Main {
         return m;
     }
 
+    private static boolean skip(String title) {
+        return !implementations.test(title);
+    }
+
     private static void questionMessage() {
         System.out.println(QUESTION_MESSAGE);
     }
@@ -1,17 +1,56 @@
 package main.collections.map;
 
 import java.util.Map;
+import main.collections.utils.FlyweightPool;
+import main.collections.utils.ItemListener;
+import main.collections.utils.NamePool;
+import main.collections.utils.Query;
 
 
 public class MapCollection {
     private Map<String, Person> items;
+    private NamePool names;
+    private FlyweightPool<Person> persons;
+    private ItemListener<Person> listener;
 
     MapCollection(Map<String, Person> map) {
         this.items = map;
     }
 
+    /**
+     * Stored persons get their names interned through the pool.
+     */
+    MapCollection(Map<String, Person> map, NamePool names) {
+        this.items = map;
+        this.names = names;
+    }
+
+    /**
+     * Stored persons are replaced by the shared (age, name) instance from the pool.
+     */
+    MapCollection(Map<String, Person> map, FlyweightPool<Person> persons) {
+        this.items = map;
+        this.persons = persons;
+    }
+
+    /**
+     * The listener is notified about every person stored or removed through this collection,
+     * a person replaced by "setItem" counts as removed. Changes made directly on "getItems()" are not seen.
+     */
+    public void setListener(ItemListener<Person> listener) {
+        this.listener = listener;
+    }
+
     public void setItem(String key, Person item) {
-        items.put(key, item);
+        Person stored = store(item);
+        Person previous = items.put(key, stored);
+
+        if (listener != null) {
+            if (previous != null) {
+                listener.onRemove(previous);
+            }
+            listener.onAdd(stored);
+        }
     }
 
     public Person getItem(String key) {
@@ -23,6 +62,25 @@ public class MapCollection {
     }
 
     public void removeItem(String key) {
-        items.remove(key);
+        Person removed = items.remove(key);
+
+        if (listener != null && removed != null) {
+            listener.onRemove(removed);
+        }
+    }
+
+    public Query<Person> query() {
+        return Query.from(items.values());
+    }
+
+    private Person store(Person item) {
+        if (persons != null) {
+            return persons.get(item.getAge(), item.getName());
+        }
+        if (names != null) {
+            item.setName(names.intern(item.getName()));
+        }
+
+        return item;
     }
 }
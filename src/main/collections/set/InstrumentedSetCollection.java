@@ -0,0 +1,37 @@
+package main.collections.set;
+
+import java.util.Set;
+import main.collections.utils.CollectionMetrics;
+import main.collections.utils.CollectionMetrics.Operation;
+
+
+/**
+ * SetCollection decorator that counts operations, samples their latency and emits JFR events
+ * for slow operations and resizes, see {@link CollectionMetrics}.
+ */
+public class InstrumentedSetCollection extends SetCollection {
+    private final CollectionMetrics metrics;
+
+    InstrumentedSetCollection(Set<Person> set, String name) {
+        super(set);
+        this.metrics = new CollectionMetrics(name, set);
+    }
+
+    public CollectionMetrics getMetrics() {
+        return metrics;
+    }
+
+    @Override
+    public void setItem(Person item) {
+        long started = metrics.start(Operation.ADD);
+        super.setItem(item);
+        metrics.end(Operation.ADD, started);
+    }
+
+    @Override
+    public void removeItem(Person item) {
+        long started = metrics.start(Operation.REMOVE);
+        super.removeItem(item);
+        metrics.end(Operation.REMOVE, started);
+    }
+}
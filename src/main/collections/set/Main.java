@@ -1,13 +1,29 @@
 package main.collections.set;
 
 
+import main.collections.utils.BestOfRounds;
+import main.collections.utils.CollectionMetrics;
+import main.collections.utils.CollidingKeys;
 import main.collections.utils.MeasuringExecutionTimeKt;
+import main.collections.utils.ParallelScaling;
+import main.collections.utils.SeededHashMap;
+import main.collections.utils.SeededHashSet;
 import java.util.*;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
 
 
 public class Main {
     private static final int COUNT = 1000000;
 
+    /**
+     * Scenario names accepted by {@link #run(String, Predicate, int)}.
+     */
+    public static final List<String> SCENARIOS = Arrays.asList("fill", "order", "remove", "parallel", "collision", "instrumented");
+
+    private static int itemCount = COUNT;
+    private static Predicate<String> implementations = title -> true;
+
     /**
      * HashSet:
      *
@@ -69,7 +85,32 @@ public class Main {
      */
     private static final String TREE_SET = "TreeSet";
 
-    private static final String QUESTION_MESSAGE = "Enter collection test (fill - 1, show collection order - 2, remove - 3): ";
+    /**
+     * SeededHashSet:
+     *
+     * Interfaces:                  Set
+     * Iteration Order:             no guarantee order, changes with every instance.
+     * Null values/keys:            disallowed
+     * Is synchronized:             implementation is not synchronized
+     * Implementation:              buckets, names hashed with seeded SipHash-2-4
+     *
+     * Description:
+     * Backed by a "SeededHashMap". Persons are hashed by name with a random per-instance seed instead of "hashCode()",
+     * so persons whose names share a hash code do not pile up in a single bucket.
+     */
+    private static final String SEEDED_HASH_SET = "SeededHashSet";
+
+    /**
+     * Consistent with "Person.equals", which only compares names.
+     */
+    private static final SeededHashMap.Hasher<Person> PERSON_HASHER = (p, k0, k1) -> SeededHashMap.STRINGS.hash(p.getName(), k0, k1);
+
+    /**
+     * Implementation names the scenarios can be filtered on (see {@link #run(String, Predicate, int)}).
+     */
+    public static final List<String> IMPLEMENTATIONS = Arrays.asList(HASH_SET, LINKED_HASH_SET, TREE_SET, SEEDED_HASH_SET);
+
+    private static final String QUESTION_MESSAGE = "Enter collection test (fill - 1, show collection order - 2, remove - 3, parallel scaling - 4, collision - 5, instrumented - 6): ";
 
     public static void main(String[] args) {
         Scanner scanner = new Scanner(System.in);
@@ -88,6 +129,15 @@ public class Main {
                 case 3:
                     removeItemTest();
                     break;
+                case 4:
+                    parallelScalingTest();
+                    break;
+                case 5:
+                    collisionTest();
+                    break;
+                case 6:
+                    instrumentedTest();
+                    break;
             }
 
             questionMessage();
@@ -96,10 +146,49 @@ public class Main {
         scanner.close();
     }
 
+    /**
+     * Runs a single scenario without prompting, for the headless runner.
+     * Only implementations (e.g. "HashSet") accepted by the predicate are measured,
+     * "count" replaces the default seed size ("COUNT").
+     */
+    public static void run(String scenario, Predicate<String> implementations, int count) {
+        Main.implementations = implementations;
+        Main.itemCount = count;
+
+        try {
+            switch (scenario) {
+                case "fill":
+                    fillHashTest();
+                    break;
+                case "order":
+                    fillHashAndShowOrderTest();
+                    break;
+                case "remove":
+                    removeItemTest();
+                    break;
+                case "parallel":
+                    parallelScalingTest();
+                    break;
+                case "collision":
+                    collisionTest();
+                    break;
+                case "instrumented":
+                    instrumentedTest();
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown scenario: " + scenario);
+            }
+        } finally {
+            Main.implementations = title -> true;
+            Main.itemCount = COUNT;
+        }
+    }
+
     private static void fillHashTest() {
         fillSet(new HashSet<Person>(), HASH_SET);
         fillSet(new LinkedHashSet<Person>(), LINKED_HASH_SET);
         fillSet(new TreeSet<Person>(), TREE_SET);
+        fillSet(new SeededHashSet<>(PERSON_HASHER), SEEDED_HASH_SET);
     }
 
     private static void fillHashAndShowOrderTest() {
@@ -112,9 +201,32 @@ public class Main {
         removeItem(new HashSet<Person>(), HASH_SET);
         removeItem(new LinkedHashSet<Person>(), LINKED_HASH_SET);
         removeItem(new TreeSet<Person>(), TREE_SET);
+        removeItem(new SeededHashSet<>(PERSON_HASHER), SEEDED_HASH_SET);
+    }
+
+    private static void parallelScalingTest() {
+        parallelScaling(new HashSet<Person>(), HASH_SET);
+        parallelScaling(new LinkedHashSet<Person>(), LINKED_HASH_SET);
+        parallelScaling(new TreeSet<Person>(), TREE_SET);
+    }
+
+    private static void collisionTest() {
+        collision(new HashSet<Person>(), HASH_SET);
+        collision(new SeededHashSet<>(PERSON_HASHER), SEEDED_HASH_SET);
+    }
+
+    private static void instrumentedTest() {
+        instrumented(HashSet::new, HASH_SET);
+        instrumented(LinkedHashSet::new, LINKED_HASH_SET);
+        instrumented(TreeSet::new, TREE_SET);
+        instrumented(() -> new SeededHashSet<>(PERSON_HASHER), SEEDED_HASH_SET);
     }
 
     private static void fillSet(Set<Person> set, String title) {
+        if (skip(title)) {
+            return;
+        }
+
         ListCollection l = seedingList(new ArrayList<>());
 
         long time = MeasuringExecutionTimeKt.start(title);
@@ -125,6 +237,10 @@ public class Main {
     }
 
     private static void fillShowOrderList(Set<Person> set, String title, int count) {
+        if (skip(title)) {
+            return;
+        }
+
         System.out.println("Start (" + title + "):");
         ListCollection l = seedingList(new ArrayList<>());
 
@@ -145,12 +261,16 @@ public class Main {
     }
 
     private static void removeItem(Set<Person> set, String title) {
+        if (skip(title)) {
+            return;
+        }
+
         ListCollection l = seedingList(new ArrayList<>());
         SetCollection m = seedingSet(l, set);
 
         long time = MeasuringExecutionTimeKt.start(title);
 
-        for (int i = 0; i < COUNT; i++) {
+        for (int i = 0; i < itemCount; i++) {
             m.removeItem(new Person(1, 30, "Name 1"));
             m.removeItem(new Person(2, 30, "Name 1"));
             m.removeItem(new Person(3, 30, "Name 1"));
@@ -162,9 +282,92 @@ public class Main {
         MeasuringExecutionTimeKt.end(time);
     }
 
+    private static void parallelScaling(Set<Person> set, String title) {
+        if (skip(title)) {
+            return;
+        }
+
+        ListCollection l = seedingList(new ArrayList<>());
+        SetCollection s = seedingSet(l, set);
+
+        ParallelScaling.run(title, s.getItems(), Person::getAge, Person::getName);
+    }
+
+    private static void collision(Set<Person> set, String title) {
+        if (skip(title)) {
+            return;
+        }
+
+        List<String> names = CollidingKeys.generate(itemCount);
+        SetCollection s = new SetCollection(set);
+
+        long time = MeasuringExecutionTimeKt.start(title + " (add " + names.size() + " colliding names)");
+        long started = System.nanoTime();
+        for (String name : names) {
+            s.setItem(new Person(1, 20, name));
+            s.setItem(new Person(2, 20, name));
+            s.setItem(new Person(3, 20, name));
+        }
+        long elapsed = System.nanoTime() - started;
+        MeasuringExecutionTimeKt.end(time);
+        System.out.println("Average add: " + elapsed / (names.size() * 3L) + " ns\n");
+
+        time = MeasuringExecutionTimeKt.start(title + " (contains " + names.size() + " colliding names)");
+        started = System.nanoTime();
+        for (String name : names) {
+            s.getItems().contains(new Person(1, 20, name));
+        }
+        elapsed = System.nanoTime() - started;
+        MeasuringExecutionTimeKt.end(time);
+        System.out.println("Average contains: " + elapsed / names.size() + " ns\n");
+    }
+
+    /**
+     * Fills and empties a plain, a disabled and an enabled instrumented set from the same seeded persons,
+     * see {@link BestOfRounds}.
+     */
+    private static void instrumented(Supplier<Set<Person>> set, String title) {
+        if (skip(title)) {
+            return;
+        }
+
+        Set<Person> persons = seedingSet(seedingList(new ArrayList<>()), new LinkedHashSet<>()).getItems();
+        InstrumentedSetCollection[] last = new InstrumentedSetCollection[1];
+
+        long[] best = new BestOfRounds()
+                .add(title + " (plain)", fillAndEmpty(() -> new SetCollection(set.get()), persons))
+                .add(title + " (instrumented, disabled)", fillAndEmpty(() -> {
+                    CollectionMetrics.setEnabled(false);
+                    return new InstrumentedSetCollection(set.get(), title);
+                }, persons))
+                .add(title + " (instrumented)", fillAndEmpty(() -> {
+                    CollectionMetrics.setEnabled(true);
+                    return last[0] = new InstrumentedSetCollection(set.get(), title);
+                }, persons))
+                .measure();
+        CollectionMetrics.setEnabled(true);
+
+        BestOfRounds.printOverhead(best[0], best[1], best[2]);
+        System.out.println(last[0].getMetrics().report());
+    }
+
+    private static Supplier<Runnable> fillAndEmpty(Supplier<SetCollection> collection, Set<Person> persons) {
+        return () -> {
+            SetCollection s = collection.get();
+            return () -> {
+                for (Person p : persons) {
+                    s.setItem(p);
+                }
+                for (Person p : persons) {
+                    s.removeItem(p);
+                }
+            };
+        };
+    }
+
     private static ListCollection seedingList(List<Person> list) {
         ListCollection l = new ListCollection(list);
-        for (int i = 0; i < COUNT; i++) {
+        for (int i = 0; i < itemCount; i++) {
             l.setItem(new Person(1, 30, "Name 1"));
             l.setItem(new Person(2, 30, "Name 1"));
             l.setItem(new Person(3, 30, "Name 1"));
@@ -185,6 +388,10 @@ public class Main {
         return m;
     }
 
+    private static boolean skip(String title) {
+        return !implementations.test(title);
+    }
+
     private static void questionMessage() {
         System.out.println(QUESTION_MESSAGE);
     }
@@ -1,6 +1,7 @@
 package main.collections.set;
 
 import java.util.Set;
+import main.collections.utils.Query;
 
 
 public class SetCollection {
@@ -21,4 +22,8 @@ public class SetCollection {
     public void removeItem(Person item) {
         items.remove(item);
     }
+
+    public Query<Person> query() {
+        return Query.from(items);
+    }
 }
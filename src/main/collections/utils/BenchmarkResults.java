@@ -0,0 +1,227 @@
+package main.collections.utils;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+
+/**
+ * Collects measurements of the scenarios while a headless run is in progress, and reads/writes them as JSON or CSV.
+ *
+ * Every "start"/"end" pair of MeasuringExecutionTime records its elapsed time, scenarios can add further metrics
+ * (e.g. speedup) through {@link #record(String, String, double, boolean)}. Nothing is kept outside of {@link #begin}/{@link #drain}.
+ */
+public class BenchmarkResults {
+    public static final String ELAPSED = "elapsed_ns";
+
+    private static final String CSV_HEADER = "package,scenario,size,title,metric,value";
+    private static final Pattern JSON_FIELD = Pattern.compile("\"(\\w+)\"\\s*:\\s*(\"((?:[^\"\\\\]|\\\\.)*)\"|[-+0-9.eE]+)");
+
+    private static final List<Result> results = new ArrayList<>();
+    private static boolean recording;
+    private static String packageName;
+    private static String scenario;
+    private static int size;
+
+    private BenchmarkResults() {
+    }
+
+    public static synchronized void begin(String packageName, String scenario, int size) {
+        BenchmarkResults.recording = true;
+        BenchmarkResults.packageName = packageName;
+        BenchmarkResults.scenario = scenario;
+        BenchmarkResults.size = size;
+    }
+
+    public static synchronized List<Result> drain() {
+        List<Result> drained = new ArrayList<>(results);
+        results.clear();
+        recording = false;
+
+        return drained;
+    }
+
+    public static void record(String title, long elapsedNanos) {
+        record(title, ELAPSED, elapsedNanos, false);
+    }
+
+    public static synchronized void record(String title, String metric, double value, boolean higherIsBetter) {
+        if (recording) {
+            results.add(new Result(packageName, scenario, size, title, metric, value, higherIsBetter));
+        }
+    }
+
+    public static void write(File file, List<Result> results) throws IOException {
+        try (Writer out = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)) {
+            if (isCsv(file)) {
+                out.write(CSV_HEADER + "\n");
+                for (Result r : results) {
+                    out.write(String.join(",", csv(r.packageName), csv(r.scenario), String.valueOf(r.size), csv(r.title),
+                            csv(r.metric), format(r.value)) + "\n");
+                }
+                return;
+            }
+
+            out.write("[\n");
+            for (int i = 0; i < results.size(); i++) {
+                Result r = results.get(i);
+                out.write(String.format("  {\"package\": %s, \"scenario\": %s, \"size\": %d, \"title\": %s, \"metric\": %s, \"value\": %s}%s%n",
+                        json(r.packageName), json(r.scenario), r.size, json(r.title), json(r.metric), format(r.value),
+                        i < results.size() - 1 ? "," : ""));
+            }
+            out.write("]\n");
+        }
+    }
+
+    /**
+     * Reads a file written by {@link #write}. Direction (higher is better) is not stored, it is taken from the current run.
+     */
+    public static List<Result> read(File file) throws IOException {
+        List<Result> read = new ArrayList<>();
+
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+            boolean csv = isCsv(file);
+            String line;
+            while ((line = in.readLine()) != null) {
+                line = line.trim();
+                if (csv && !line.isEmpty() && !line.equals(CSV_HEADER)) {
+                    read.add(parseCsv(line));
+                } else if (!csv && line.startsWith("{")) {
+                    read.add(parseJson(line));
+                }
+            }
+        }
+
+        return read;
+    }
+
+    private static Result parseCsv(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted && c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                field.append('"');
+                i++;
+            } else if (c == '"') {
+                quoted = !quoted;
+            } else if (c == ',' && !quoted) {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+
+        if (fields.size() != 6) {
+            throw new IllegalArgumentException("Malformed CSV result: " + line);
+        }
+
+        return new Result(fields.get(0), fields.get(1), Integer.parseInt(fields.get(2)), fields.get(3), fields.get(4),
+                Double.parseDouble(fields.get(5)), false);
+    }
+
+    private static Result parseJson(String line) {
+        String packageName = null, scenario = null, title = null, metric = null;
+        int size = 0;
+        double value = 0;
+
+        Matcher m = JSON_FIELD.matcher(line);
+        while (m.find()) {
+            String text = m.group(3) != null ? m.group(3).replace("\\\"", "\"").replace("\\\\", "\\") : m.group(2);
+            switch (m.group(1)) {
+                case "package":
+                    packageName = text;
+                    break;
+                case "scenario":
+                    scenario = text;
+                    break;
+                case "size":
+                    size = Integer.parseInt(text);
+                    break;
+                case "title":
+                    title = text;
+                    break;
+                case "metric":
+                    metric = text;
+                    break;
+                case "value":
+                    value = Double.parseDouble(text);
+                    break;
+            }
+        }
+
+        if (packageName == null || scenario == null || title == null || metric == null) {
+            throw new IllegalArgumentException("Malformed JSON result: " + line);
+        }
+
+        return new Result(packageName, scenario, size, title, metric, value, false);
+    }
+
+    private static boolean isCsv(File file) {
+        return file.getName().toLowerCase(Locale.ROOT).endsWith(".csv");
+    }
+
+    private static String csv(String s) {
+        return s.contains(",") || s.contains("\"") ? "\"" + s.replace("\"", "\"\"") + "\"" : s;
+    }
+
+    private static String json(String s) {
+        return "\"" + s.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+    }
+
+    private static String format(double value) {
+        return value == Math.rint(value) && Math.abs(value) < 1e15 ? String.valueOf((long) value) : String.valueOf(value);
+    }
+
+    public static class Result {
+        private final String packageName;
+        private final String scenario;
+        private final int size;
+        private final String title;
+        private final String metric;
+        private final double value;
+        private final boolean higherIsBetter;
+
+        Result(String packageName, String scenario, int size, String title, String metric, double value, boolean higherIsBetter) {
+            this.packageName = packageName;
+            this.scenario = scenario;
+            this.size = size;
+            this.title = title;
+            this.metric = metric;
+            this.value = value;
+            this.higherIsBetter = higherIsBetter;
+        }
+
+        public String getKey() {
+            return packageName + "/" + scenario + "/" + size + "/" + title + "/" + metric;
+        }
+
+        public String getPackage() {
+            return packageName;
+        }
+
+        public String getScenario() {
+            return scenario;
+        }
+
+        public String getMetric() {
+            return metric;
+        }
+
+        public double getValue() {
+            return value;
+        }
+
+        public boolean isHigherBetter() {
+            return higherIsBetter;
+        }
+    }
+}
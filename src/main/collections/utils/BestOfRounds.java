@@ -0,0 +1,74 @@
+package main.collections.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Supplier;
+
+
+/**
+ * Best-of-N timing for benchmarks that compare variants of the same work (e.g. plain vs. instrumented fill).
+ *
+ * A variant is a supplier that prepares one round (untimed, e.g. creates an empty collection) and returns the work to time.
+ * Every variant first runs an untimed warm-up round, then {@link #ROUNDS} timed ones. The variants take turns within
+ * each round, so JIT compilation, heap growth and frequency changes affect all of them alike; the fastest round counts
+ * and is the only time recorded in {@link BenchmarkResults}, once per variant.
+ */
+public class BestOfRounds {
+    public static final int ROUNDS = 5;
+
+    private final List<String> titles = new ArrayList<>();
+    private final List<Supplier<Runnable>> variants = new ArrayList<>();
+
+    public BestOfRounds add(String title, Supplier<Runnable> variant) {
+        titles.add(title);
+        variants.add(variant);
+        return this;
+    }
+
+    /**
+     * Returns the best time in nanoseconds of every variant, in the order they were added.
+     */
+    public long[] measure() {
+        long[] best = new long[variants.size()];
+        Arrays.fill(best, Long.MAX_VALUE);
+
+        for (int round = 0; round <= ROUNDS; round++) {
+            for (int i = 0; i < variants.size(); i++) {
+                Runnable work = variants.get(i).get();
+                System.gc();
+
+                long started = System.nanoTime();
+                work.run();
+                long elapsed = System.nanoTime() - started;
+
+                // Round 0 only warms up.
+                if (round > 0) {
+                    best[i] = Math.min(best[i], elapsed);
+                }
+            }
+        }
+
+        for (int i = 0; i < best.length; i++) {
+            System.out.printf("%s: best of %d rounds %.1f ms%n", titles.get(i), ROUNDS, best[i] / 1e6);
+            BenchmarkResults.record(titles.get(i), best[i]);
+        }
+
+        return best;
+    }
+
+    public static long measure(String title, Supplier<Runnable> variant) {
+        return new BestOfRounds().add(title, variant).measure()[0];
+    }
+
+    /**
+     * Prints how much slower a disabled and an enabled instrumented variant were than the plain one.
+     */
+    public static void printOverhead(long plain, long disabled, long enabled) {
+        System.out.printf("Overhead: disabled %.1f%%, enabled %.1f%%%n", overhead(plain, disabled), overhead(plain, enabled));
+    }
+
+    public static double overhead(long plain, long measured) {
+        return (double) (measured - plain) / plain * 100;
+    }
+}
@@ -0,0 +1,237 @@
+package main.collections.utils;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+
+
+/**
+ * Low-overhead metrics for the instrumented collection decorators.
+ *
+ * Every operation is counted, but only every {@link #SAMPLE_RATE}-th operation of each kind is timed into a
+ * {@link LatencyHistogram}, plus every insert that is expected to resize the backing storage and every positional
+ * get/insert/remove on a list without random access (a LinkedList walks to the index, so timing it costs little extra).
+ * Timed operations slower than the threshold emit a {@link SlowOperationEvent}, modelled resizes a {@link ResizeEvent}.
+ * Other operations are not timed, so slow events are a sample: an operation that is always slow shows up in about
+ * one of SAMPLE_RATE calls, a single outlier is most likely missed.
+ *
+ * Resizes are not observable from outside the JDK collections, so they are predicted from the default growth policy
+ * of the backing collection (ArrayList 1.5x, Vector 2x, hash tables 2x at 75% load). Collections created with a custom
+ * initial capacity are therefore reported approximately. Since every insert adds at most one element, the size is only
+ * read once enough inserts happened to reach the next modelled threshold; all other inserts just count down.
+ *
+ * Counters are plain fields, an atomic increment would cost more than the operations being counted.
+ * They are exact as long as one thread writes at a time (as the non-synchronized collections require anyway),
+ * concurrent writers of a Vector or ConcurrentHashMap may lose a few counts.
+ *
+ * The global switch ({@link #setEnabled}) turns all of it off; a disabled decorator only pays for a volatile read.
+ * Enabled, an untimed operation costs an increment, a countdown for inserts and a few compares, in total a few
+ * nanoseconds per call. That is within a few percent for operations costing hundreds of nanoseconds (TreeMap, TreeSet,
+ * LinkedList scans), but not for the cheapest ones: ArrayList.add/get (4 - 10 ns) and HashMap.get (~25 ns) get
+ * 20 - 80% slower. Decorate those only where the counts are worth it.
+ */
+public class CollectionMetrics {
+    public static final int SAMPLE_RATE = 64;
+    private static final long NOT_TIMED = Long.MIN_VALUE;
+
+    private static volatile boolean enabled = !Boolean.getBoolean("collections.metrics.disabled");
+    private static volatile long slowThresholdNanos = 1000000;
+
+    public enum Operation {
+        ADD(true), INSERT(true), GET(false), REMOVE(false);
+
+        private final boolean insert;
+
+        Operation(boolean insert) {
+            this.insert = insert;
+        }
+    }
+
+    private final String collection;
+    private final IntSupplier size;
+    private final Growth growth;
+    private final boolean positionalScans;
+    private final long[] counts = new long[Operation.values().length];
+    private final LatencyHistogram[] latencies = new LatencyHistogram[Operation.values().length];
+    private final LongAdder resizes = new LongAdder();
+    private long insertsUntilCheck;
+
+    /**
+     * "backing" is the collection or map the decorator delegates to, its size is only read when a modelled threshold may be crossed and for events.
+     */
+    public CollectionMetrics(String collection, Object backing) {
+        this.collection = collection;
+        this.size = backing instanceof Map ? ((Map<?, ?>) backing)::size : ((Collection<?>) backing)::size;
+        this.growth = Growth.of(backing);
+        this.positionalScans = backing instanceof List && !(backing instanceof RandomAccess);
+        this.insertsUntilCheck = growth.isModelled() ? growth.threshold + 1 - size.getAsInt() : Long.MAX_VALUE;
+
+        for (int i = 0; i < latencies.length; i++) {
+            latencies[i] = new LatencyHistogram();
+        }
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    public static void setEnabled(boolean enabled) {
+        CollectionMetrics.enabled = enabled;
+    }
+
+    public static long getSlowThresholdNanos() {
+        return slowThresholdNanos;
+    }
+
+    public static void setSlowThresholdNanos(long nanos) {
+        slowThresholdNanos = nanos;
+    }
+
+    /**
+     * Call before an operation. Counts it and returns the start time if the operation is timed, {@link #NOT_TIMED} otherwise.
+     */
+    public long start(Operation operation) {
+        if (!enabled) {
+            return NOT_TIMED;
+        }
+
+        // Unsynchronized on purpose: a lost count under contention only shifts the sample.
+        boolean timed = (++counts[operation.ordinal()] & (SAMPLE_RATE - 1)) == 0;
+        if (operation.insert && --insertsUntilCheck <= 0) {
+            timed = true;
+        }
+        if (positionalScans && operation != Operation.ADD) {
+            timed = true;
+        }
+
+        return timed ? System.nanoTime() : NOT_TIMED;
+    }
+
+    /**
+     * Call after an operation with the value returned by {@link #start}. Untimed operations return right away.
+     */
+    public void end(Operation operation, long started) {
+        if (started == NOT_TIMED) {
+            return;
+        }
+
+        long latency = System.nanoTime() - started;
+        latencies[operation.ordinal()].record(latency);
+
+        if (latency >= slowThresholdNanos) {
+            SlowOperationEvent event = new SlowOperationEvent();
+            if (event.shouldCommit()) {
+                event.collection = collection;
+                event.operation = operation.name();
+                event.size = size.getAsInt();
+                event.latency = latency;
+                event.commit();
+            }
+        }
+
+        if (operation.insert && insertsUntilCheck <= 0) {
+            checkGrowth();
+        }
+    }
+
+    /**
+     * Reads the size once the countdown says the next threshold may be crossed. Removes since the last check
+     * can leave the collection below it, then the countdown simply starts again from the current size.
+     */
+    private void checkGrowth() {
+        int current = size.getAsInt();
+        long oldCapacity = growth.capacity;
+        boolean resized = growth.grow(current);
+        insertsUntilCheck = growth.threshold + 1 - current;
+
+        if (resized) {
+            resizes.increment();
+
+            ResizeEvent event = new ResizeEvent();
+            if (event.shouldCommit()) {
+                event.collection = collection;
+                event.size = current;
+                event.oldCapacity = oldCapacity;
+                event.newCapacity = growth.capacity;
+                event.commit();
+            }
+        }
+    }
+
+    public long getCount(Operation operation) {
+        return counts[operation.ordinal()];
+    }
+
+    public LatencyHistogram getLatencies(Operation operation) {
+        return latencies[operation.ordinal()];
+    }
+
+    public long getResizes() {
+        return resizes.sum();
+    }
+
+    public String report() {
+        StringBuilder sb = new StringBuilder(collection + " (resizes: " + getResizes() + ")\n");
+        for (Operation operation : Operation.values()) {
+            long count = getCount(operation);
+            if (count == 0) {
+                continue;
+            }
+
+            LatencyHistogram h = getLatencies(operation);
+            sb.append(String.format("  %-6s count: %d, sampled: %d, p50: %d ns, p99: %d ns, max: %d ns%n",
+                    operation, count, h.getCount(), h.percentile(50), h.percentile(99), h.getMax()));
+        }
+
+        return sb.toString();
+    }
+
+    /**
+     * Capacity model of the backing collection.
+     */
+    private static final class Growth {
+        private final double factor;
+        private final double load;
+        private long capacity;
+        private long threshold;
+
+        private Growth(long capacity, double factor, double load) {
+            this.capacity = capacity;
+            this.factor = factor;
+            this.load = load;
+            this.threshold = (long) (capacity * load);
+        }
+
+        static Growth of(Object backing) {
+            if (backing instanceof ArrayList) {
+                return new Growth(10, 1.5, 1);
+            }
+            if (backing instanceof Vector) {
+                return new Growth(10, 2, 1);
+            }
+            if (backing instanceof HashMap || backing instanceof HashSet || backing instanceof ConcurrentHashMap
+                    || backing instanceof Hashtable || backing instanceof SeededHashMap || backing instanceof SeededHashSet) {
+                return new Growth(16, 2, 0.75);
+            }
+
+            // Linked nodes and trees allocate per element and never resize.
+            return new Growth(Long.MAX_VALUE, 1, 1);
+        }
+
+        boolean isModelled() {
+            return factor > 1;
+        }
+
+        boolean grow(int size) {
+            boolean resized = false;
+            while (size > threshold) {
+                capacity = (long) (capacity * factor);
+                threshold = (long) (capacity * load);
+                resized = true;
+            }
+
+            return resized;
+        }
+    }
+}
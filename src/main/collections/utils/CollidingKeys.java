@@ -0,0 +1,41 @@
+package main.collections.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+
+/**
+ * Strings built from the blocks "Aa" and "BB", which have the same "String.hashCode()",
+ * so all strings of the same length share one hash code. Used to stress maps and sets that bucket by "hashCode()".
+ */
+public final class CollidingKeys {
+    /**
+     * Upper bound of {@link #generate(int)}, keeps the keys short enough to build quickly.
+     */
+    public static final int MAX_KEYS = 1 << 20;
+
+    private CollidingKeys() {
+    }
+
+    /**
+     * Returns the largest power of two keys not above "count" (at least 2, at most MAX_KEYS), all with the same hash code.
+     */
+    public static List<String> generate(int count) {
+        int limit = Math.min(count, MAX_KEYS);
+        int blocks = 1;
+        while (1 << (blocks + 1) <= limit) {
+            blocks++;
+        }
+
+        List<String> keys = new ArrayList<>(1 << blocks);
+        for (int i = 0; i < 1 << blocks; i++) {
+            StringBuilder sb = new StringBuilder(blocks * 2);
+            for (int b = 0; b < blocks; b++) {
+                sb.append((i >> b & 1) == 0 ? "Aa" : "BB");
+            }
+            keys.add(sb.toString());
+        }
+
+        return keys;
+    }
+}
@@ -0,0 +1,91 @@
+package main.collections.utils;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+
+/**
+ * Flyweight cache of persons keyed by (age, name).
+ *
+ * Equal persons share a single instance, and their names are interned through a {@link NamePool}.
+ * Shared instances must not be mutated (setAge, setName) after they were handed out, since every holder would see the change.
+ */
+public class FlyweightPool<T> {
+    /**
+     * Estimated shallow size of a person (header, int age, name reference).
+     */
+    private static final long INSTANCE_SIZE = 24;
+
+    public interface Factory<T> {
+        T create(int age, String name);
+    }
+
+    private final NamePool names;
+    private final Factory<T> factory;
+    private final ConcurrentHashMap<Key, T> instances = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+
+    public FlyweightPool(Factory<T> factory) {
+        this(new NamePool(), factory);
+    }
+
+    public FlyweightPool(NamePool names, Factory<T> factory) {
+        this.names = names;
+        this.factory = factory;
+    }
+
+    public T get(int age, String name) {
+        Key key = new Key(age, names.intern(name));
+
+        T instance = instances.get(key);
+        if (instance != null) {
+            hits.increment();
+            return instance;
+        }
+
+        return instances.computeIfAbsent(key, k -> factory.create(k.age, k.name));
+    }
+
+    public NamePool getNames() {
+        return names;
+    }
+
+    public int size() {
+        return instances.size();
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * Approximate heap released by sharing person instances, including the names saved by the name pool.
+     */
+    public long getSavedBytes() {
+        return getHits() * INSTANCE_SIZE + names.getSavedBytes();
+    }
+
+    private static final class Key {
+        private final int age;
+        private final String name;
+
+        Key(int age, String name) {
+            this.age = age;
+            this.name = name;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key)) return false;
+            Key k = (Key) obj;
+
+            // Names are interned, so the identity check is enough.
+            return k.age == age && k.name == name;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * age + (name == null ? 0 : name.hashCode());
+        }
+    }
+}
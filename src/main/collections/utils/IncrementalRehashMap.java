@@ -0,0 +1,368 @@
+package main.collections.utils;
+
+import java.util.*;
+
+
+/**
+ * Hash map that grows its table incrementally, like the dictionaries in Redis.
+ *
+ * "HashMap" moves all entries into the doubled table inside the single "put" that crosses the threshold,
+ * so that put pays for the whole rehash. Here crossing the threshold only allocates the new table;
+ * the buckets of the old table are then migrated a few at a time by the following operations
+ * ({@link #WRITE_STEPS} buckets per put/remove, {@link #READ_STEPS} per get). Until the migration is done,
+ * lookups check both tables.
+ *
+ * A write migrates enough buckets to finish before the new table reaches its own threshold, so at most two tables
+ * exist at any time. Because reads migrate too, the map must not be read concurrently, even without writers.
+ * Null keys are not allowed.
+ *
+ * Like the "safe iterators" of Redis, operations that do not add or remove entries do not migrate while an iterator
+ * may be in use, so "get" (or "put" of an existing key) inside a loop over the entries is allowed, as with "HashMap".
+ * An iterator is considered in use until the next insert or remove, which invalidates it anyway.
+ */
+public class IncrementalRehashMap<K, V> extends AbstractMap<K, V> {
+    static final int WRITE_STEPS = 4;
+    static final int READ_STEPS = 1;
+
+    private static final int INITIAL_CAPACITY = 16;
+    private static final float LOAD_FACTOR = 0.75f;
+
+    private Node<K, V>[] table;
+    private Node<K, V>[] old;
+    private int migrated;
+    private int size;
+    private int threshold;
+    private int modCount;
+    private int iteratedModCount = -1;
+    private Set<Entry<K, V>> entrySet;
+
+    public IncrementalRehashMap() {
+        this.table = newTable(INITIAL_CAPACITY);
+        this.threshold = (int) (INITIAL_CAPACITY * LOAD_FACTOR);
+    }
+
+    /**
+     * True while entries are still being moved from the old table.
+     */
+    public boolean isRehashing() {
+        return old != null;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        migrateUnlessIterating();
+        return find(key) != null;
+    }
+
+    @Override
+    public V get(Object key) {
+        migrateUnlessIterating();
+        Node<K, V> node = find(key);
+
+        return node == null ? null : node.value;
+    }
+
+    @Override
+    public V put(K key, V value) {
+        Node<K, V> node = find(key);
+        if (node != null) {
+            migrateUnlessIterating();
+            V previous = node.value;
+            node.value = value;
+            return previous;
+        }
+
+        migrate(WRITE_STEPS);
+        int hash = hash(key);
+        int index = hash & (table.length - 1);
+        table[index] = new Node<>(hash, key, value, table[index]);
+        modCount++;
+
+        if (++size > threshold && old == null) {
+            old = table;
+            migrated = 0;
+            table = newTable(old.length * 2);
+            threshold = (int) (table.length * LOAD_FACTOR);
+        }
+
+        return null;
+    }
+
+    @Override
+    public V remove(Object key) {
+        Node<K, V> node = removeNode(key);
+        if (node == null) {
+            migrateUnlessIterating();
+            return null;
+        }
+
+        migrate(WRITE_STEPS);
+        return node.value;
+    }
+
+    @Override
+    public void clear() {
+        table = newTable(INITIAL_CAPACITY);
+        threshold = (int) (INITIAL_CAPACITY * LOAD_FACTOR);
+        old = null;
+        size = 0;
+        modCount++;
+    }
+
+    @Override
+    public Set<Entry<K, V>> entrySet() {
+        if (entrySet == null) {
+            entrySet = new AbstractSet<Entry<K, V>>() {
+                @Override
+                public Iterator<Entry<K, V>> iterator() {
+                    return new EntryIterator();
+                }
+
+                @Override
+                public int size() {
+                    return size;
+                }
+
+                @Override
+                public void clear() {
+                    IncrementalRehashMap.this.clear();
+                }
+            };
+        }
+
+        return entrySet;
+    }
+
+    /**
+     * Used by operations that leave the entries unchanged (reads, updates of an existing key, removes of a missing one).
+     * An iterator created since the last structural change is still valid, moving buckets would make it skip
+     * or repeat entries. Inserts and removes migrate unconditionally, they invalidate iterators anyway.
+     */
+    private void migrateUnlessIterating() {
+        if (iteratedModCount != modCount) {
+            migrate(READ_STEPS);
+        }
+    }
+
+    /**
+     * Moves up to "steps" non-empty buckets of the old table into the new one.
+     */
+    private void migrate(int steps) {
+        if (old == null) {
+            return;
+        }
+
+        // Bound the empty buckets visited as well, so one call never scans a long empty run (Redis uses 10x).
+        int visits = steps * 10;
+        while (steps > 0 && visits-- > 0 && migrated < old.length) {
+            Node<K, V> node = old[migrated];
+            old[migrated++] = null;
+            if (node == null) {
+                continue;
+            }
+
+            while (node != null) {
+                Node<K, V> next = node.next;
+                int index = node.hash & (table.length - 1);
+                node.next = table[index];
+                table[index] = node;
+                node = next;
+            }
+            steps--;
+        }
+
+        if (migrated == old.length) {
+            old = null;
+        }
+    }
+
+    private Node<K, V> find(Object key) {
+        int hash = hash(key);
+
+        for (Node<K, V> node = table[hash & (table.length - 1)]; node != null; node = node.next) {
+            if (node.hash == hash && key.equals(node.key)) {
+                return node;
+            }
+        }
+
+        if (old != null) {
+            int index = hash & (old.length - 1);
+            if (index >= migrated) {
+                for (Node<K, V> node = old[index]; node != null; node = node.next) {
+                    if (node.hash == hash && key.equals(node.key)) {
+                        return node;
+                    }
+                }
+            }
+        }
+
+        return null;
+    }
+
+    private Node<K, V> removeNode(Object key) {
+        int hash = hash(key);
+
+        Node<K, V> node = unlink(table, hash & (table.length - 1), hash, key);
+        if (node == null && old != null) {
+            int index = hash & (old.length - 1);
+            if (index >= migrated) {
+                node = unlink(old, index, hash, key);
+            }
+        }
+
+        if (node != null) {
+            size--;
+            modCount++;
+        }
+
+        return node;
+    }
+
+    private static <K, V> Node<K, V> unlink(Node<K, V>[] tab, int index, int hash, Object key) {
+        Node<K, V> previous = null;
+        for (Node<K, V> node = tab[index]; node != null; previous = node, node = node.next) {
+            if (node.hash == hash && key.equals(node.key)) {
+                if (previous == null) {
+                    tab[index] = node.next;
+                } else {
+                    previous.next = node.next;
+                }
+                return node;
+            }
+        }
+
+        return null;
+    }
+
+    private static int hash(Object key) {
+        if (key == null) {
+            throw new NullPointerException("Null keys are not allowed");
+        }
+
+        int h = key.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <K, V> Node<K, V>[] newTable(int length) {
+        return (Node<K, V>[]) new Node[length];
+    }
+
+    private static final class Node<K, V> implements Entry<K, V> {
+        private final int hash;
+        private final K key;
+        private V value;
+        private Node<K, V> next;
+
+        Node(int hash, K key, V value, Node<K, V> next) {
+            this.hash = hash;
+            this.key = key;
+            this.value = value;
+            this.next = next;
+        }
+
+        @Override
+        public K getKey() {
+            return key;
+        }
+
+        @Override
+        public V getValue() {
+            return value;
+        }
+
+        @Override
+        public V setValue(V value) {
+            V previous = this.value;
+            this.value = value;
+            return previous;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Entry)) return false;
+            Entry<?, ?> e = (Entry<?, ?>) obj;
+
+            return key.equals(e.getKey()) && Objects.equals(value, e.getValue());
+        }
+
+        @Override
+        public int hashCode() {
+            return key.hashCode() ^ Objects.hashCode(value);
+        }
+    }
+
+    /**
+     * Walks the new table, then whatever is left in the old one. Iterating does not migrate buckets.
+     */
+    private final class EntryIterator implements Iterator<Entry<K, V>> {
+        private final Node<K, V>[] first = table;
+        private final Node<K, V>[] second = old;
+        private int expectedModCount = modCount;
+        private Node<K, V>[] current = first;
+        private int index;
+        private Node<K, V> next;
+        private Node<K, V> last;
+
+        EntryIterator() {
+            iteratedModCount = modCount;
+            advance();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public Entry<K, V> next() {
+            if (modCount != expectedModCount || table != first || old != second) {
+                throw new ConcurrentModificationException();
+            }
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+
+            last = next;
+            next = next.next;
+            if (next == null) {
+                advance();
+            }
+
+            return last;
+        }
+
+        @Override
+        public void remove() {
+            if (last == null) {
+                throw new IllegalStateException();
+            }
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+
+            removeNode(last.key);
+            expectedModCount = modCount;
+            iteratedModCount = modCount;
+            last = null;
+        }
+
+        private void advance() {
+            while (next == null) {
+                if (index < current.length) {
+                    next = current[index++];
+                } else if (current == first && second != null) {
+                    current = second;
+                    index = 0;
+                } else {
+                    return;
+                }
+            }
+        }
+    }
+}
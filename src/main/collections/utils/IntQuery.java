@@ -0,0 +1,77 @@
+package main.collections.utils;
+
+import java.util.Collection;
+import java.util.OptionalDouble;
+import java.util.OptionalInt;
+import java.util.function.*;
+
+
+/**
+ * Lazy query over primitive "int" values, created by {@link Query#mapToInt}. Values are never boxed.
+ */
+public class IntQuery {
+    private final Collection<?> source;
+    private final Function<Query.IntSink, Query.Sink<Object>> pipeline;
+    private final boolean parallel;
+    private final boolean limited;
+
+    IntQuery(Collection<?> source, Function<Query.IntSink, Query.Sink<Object>> pipeline, boolean parallel, boolean limited) {
+        this.source = source;
+        this.pipeline = pipeline;
+        this.parallel = parallel;
+        this.limited = limited;
+    }
+
+    public IntQuery filter(IntPredicate predicate) {
+        return new IntQuery(source, sink -> pipeline.apply(value -> !predicate.test(value) || sink.accept(value)), parallel, limited);
+    }
+
+    public long count() {
+        return evaluate(() -> new long[1], count -> value -> {
+            count[0]++;
+            return true;
+        }, (a, b) -> {
+            a[0] += b[0];
+            return a;
+        })[0];
+    }
+
+    public long sum() {
+        return evaluate(() -> new long[1], sum -> value -> {
+            sum[0] += value;
+            return true;
+        }, (a, b) -> {
+            a[0] += b[0];
+            return a;
+        })[0];
+    }
+
+    public OptionalDouble average() {
+        long[] stats = evaluate(() -> new long[2], acc -> value -> {
+            acc[0] += value;
+            acc[1]++;
+            return true;
+        }, (a, b) -> {
+            a[0] += b[0];
+            a[1] += b[1];
+            return a;
+        });
+
+        return stats[1] == 0 ? OptionalDouble.empty() : OptionalDouble.of((double) stats[0] / stats[1]);
+    }
+
+    public OptionalInt max() {
+        long[] max = evaluate(() -> new long[]{Long.MIN_VALUE}, acc -> value -> {
+            if (value > acc[0]) {
+                acc[0] = value;
+            }
+            return true;
+        }, (a, b) -> b[0] > a[0] ? b : a);
+
+        return max[0] == Long.MIN_VALUE ? OptionalInt.empty() : OptionalInt.of((int) max[0]);
+    }
+
+    private <A> A evaluate(Supplier<A> supplier, Function<A, Query.IntSink> terminal, BinaryOperator<A> combiner) {
+        return Query.evaluate(source, acc -> pipeline.apply(terminal.apply(acc)), supplier, combiner, parallel && !limited);
+    }
+}
@@ -0,0 +1,12 @@
+package main.collections.utils;
+
+
+/**
+ * Notified by a collection about every item it stores or removes.
+ * Collections can be filled from several threads, so implementations have to be thread-safe.
+ */
+public interface ItemListener<T> {
+    void onAdd(T item);
+
+    void onRemove(T item);
+}
@@ -2,18 +2,26 @@ package main.collections.utils
 
 import java.util.*
 
+private var lForTitle = ""
+private var lForStartNanos = 0L
+
 fun start(title: String): Long {
     val lForStartTime = Date().time
     println("Start (" + title + "): $lForStartTime")
 
+    lForTitle = title
+    lForStartNanos = System.nanoTime()
     return lForStartTime
 }
 
 fun end(lForStartTime: Long) {
+    val lForElapsedNanos = System.nanoTime() - lForStartNanos
     val lForEndTime = Date().time
     println("End: $lForEndTime")
 
     val lForDifference = lForEndTime - lForStartTime
     println("Elapsed time in milliseconds: $lForDifference")
     println("-------END-------\n")
+
+    BenchmarkResults.record(lForTitle, lForElapsedNanos)
 }
@@ -0,0 +1,71 @@
+package main.collections.utils;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+
+/**
+ * Concurrent interning pool for names.
+ *
+ * Unlike "String.intern()", the pool lives on the regular heap and can be dropped together with the collections using it.
+ * Hits, misses and the approximate number of bytes saved by sharing are counted with "LongAdder", so they are cheap
+ * to update from many threads.
+ */
+public class NamePool {
+    private final ConcurrentHashMap<String, String> names = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder savedBytes = new LongAdder();
+
+    public String intern(String name) {
+        if (name == null) {
+            return null;
+        }
+
+        String pooled = names.get(name);
+        if (pooled == null) {
+            pooled = names.putIfAbsent(name, name);
+            if (pooled == null) {
+                misses.increment();
+                return name;
+            }
+        }
+
+        hits.increment();
+        if (pooled != name) {
+            savedBytes.add(estimateSize(name));
+        }
+
+        return pooled;
+    }
+
+    public int size() {
+        return names.size();
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * Approximate heap released by replacing duplicate name instances with the pooled ones.
+     */
+    public long getSavedBytes() {
+        return savedBytes.sum();
+    }
+
+    /**
+     * Shallow String (24 bytes) plus its backing "byte[]" (16 bytes header), assuming compact Latin-1 strings.
+     */
+    static long estimateSize(String s) {
+        return 24 + align(16 + s.length());
+    }
+
+    static long align(long size) {
+        return (size + 7) & ~7L;
+    }
+}
@@ -0,0 +1,73 @@
+package main.collections.utils;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+import java.util.stream.Collectors;
+
+
+/**
+ * Runs parallel reductions (sum of ages, counts per name) over a collection with 1..N ForkJoin workers
+ * and prints the speedup against a single worker.
+ *
+ * The speedup shows how well the collection's spliterator splits: array backed collections split evenly,
+ * while "LinkedList" and "TreeMap" hand out small unbalanced batches and stop scaling early.
+ */
+public class ParallelScaling {
+    private ParallelScaling() {
+    }
+
+    public static <T> void run(String title, Collection<T> items, ToIntFunction<? super T> age, Function<? super T, String> name) {
+        int processors = Runtime.getRuntime().availableProcessors();
+        long single = 0;
+
+        for (int workers = 1; workers <= processors; workers = nextWorkers(workers, processors)) {
+            ForkJoinPool pool = new ForkJoinPool(workers);
+            try {
+                reduce(pool, items, age, name);
+
+                long time = MeasuringExecutionTimeKt.start(title + " (" + workers + " workers)");
+                long started = System.nanoTime();
+                long result = reduce(pool, items, age, name);
+                long elapsed = System.nanoTime() - started;
+                MeasuringExecutionTimeKt.end(time);
+
+                if (workers == 1) {
+                    single = elapsed;
+                }
+                double speedup = (double) single / elapsed;
+                System.out.printf("Result: %d, speedup: %.2f%n%n", result, speedup);
+                BenchmarkResults.record(title + " (" + workers + " workers)", "speedup", speedup, true);
+            } finally {
+                pool.shutdown();
+            }
+        }
+    }
+
+    /**
+     * Next step of 1, 2, 4 ... that always ends with exactly "max" (e.g. 1, 2, 4, 6 for six).
+     */
+    public static int nextWorkers(int workers, int max) {
+        return workers < max && workers * 2 > max ? max : workers * 2;
+    }
+
+    private static <T> long reduce(ForkJoinPool pool, Collection<T> items, ToIntFunction<? super T> age,
+                                   Function<? super T, String> name) {
+        try {
+            return pool.submit(() -> {
+                long ages = items.parallelStream().mapToLong(age::applyAsInt).sum();
+                Map<String, Long> names = items.parallelStream().collect(Collectors.groupingByConcurrent(name, Collectors.counting()));
+
+                return ages + names.size();
+            }).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+}
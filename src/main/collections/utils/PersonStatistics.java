@@ -0,0 +1,117 @@
+package main.collections.utils;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+
+
+/**
+ * Live count and average age, overall, per age and per name, kept up to date while persons are added and removed.
+ *
+ * All counters are "LongAdder"s, so writers on different threads update separate cells instead of
+ * contending on one value. Ages 0 - MAX_AGE are counted in a fixed bucket array, other ages in a map.
+ * Reads sum the cells of a counter, they don't depend on the number of stored persons.
+ *
+ * While writers are running, a read combines counters that may be updated in between (e.g. "averageAge()"
+ * can include an age whose count is not added yet); once they are done, the numbers are exact.
+ * A person is counted with the age and name it had when it was added, so it must not change while stored.
+ */
+public class PersonStatistics<T> implements ItemListener<T> {
+    public static final int MAX_AGE = 150;
+
+    private final ToIntFunction<? super T> age;
+    private final Function<? super T, String> name;
+
+    private final LongAdder count = new LongAdder();
+    private final LongAdder ageSum = new LongAdder();
+    private final LongAdder[] ageCounts = new LongAdder[MAX_AGE + 1];
+    private final ConcurrentHashMap<Integer, LongAdder> otherAgeCounts = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, NameStatistics> names = new ConcurrentHashMap<>();
+
+    public PersonStatistics(ToIntFunction<? super T> age, Function<? super T, String> name) {
+        this.age = age;
+        this.name = name;
+
+        for (int i = 0; i < ageCounts.length; i++) {
+            ageCounts[i] = new LongAdder();
+        }
+    }
+
+    @Override
+    public void onAdd(T item) {
+        update(item, 1);
+    }
+
+    @Override
+    public void onRemove(T item) {
+        update(item, -1);
+    }
+
+    public long count() {
+        return count.sum();
+    }
+
+    /**
+     * Average age of all persons, 0 if there are none.
+     */
+    public double averageAge() {
+        return average(ageSum.sum(), count.sum());
+    }
+
+    public long countByAge(int age) {
+        if (age >= 0 && age <= MAX_AGE) {
+            return ageCounts[age].sum();
+        }
+
+        LongAdder counter = otherAgeCounts.get(age);
+        return counter == null ? 0 : counter.sum();
+    }
+
+    public long countByName(String name) {
+        NameStatistics statistics = name == null ? null : names.get(name);
+        return statistics == null ? 0 : statistics.count.sum();
+    }
+
+    /**
+     * Average age of the persons with the name, 0 if there are none.
+     */
+    public double averageAgeByName(String name) {
+        NameStatistics statistics = name == null ? null : names.get(name);
+        return statistics == null ? 0 : average(statistics.ageSum.sum(), statistics.count.sum());
+    }
+
+    private void update(T item, int delta) {
+        int a = age.applyAsInt(item);
+
+        count.add(delta);
+        ageSum.add((long) a * delta);
+
+        if (a >= 0 && a <= MAX_AGE) {
+            ageCounts[a].add(delta);
+        } else {
+            otherAgeCounts.computeIfAbsent(a, k -> new LongAdder()).add(delta);
+        }
+
+        // Persons without a name only count towards the totals.
+        String n = name.apply(item);
+        if (n != null) {
+            // "get" first, "computeIfAbsent" can lock the bin even when the name is already there.
+            NameStatistics statistics = names.get(n);
+            if (statistics == null) {
+                statistics = names.computeIfAbsent(n, k -> new NameStatistics());
+            }
+            statistics.count.add(delta);
+            statistics.ageSum.add((long) a * delta);
+        }
+    }
+
+    private static double average(long sum, long count) {
+        return count <= 0 ? 0 : (double) sum / count;
+    }
+
+    private static final class NameStatistics {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder ageSum = new LongAdder();
+    }
+}
@@ -0,0 +1,206 @@
+package main.collections.utils;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.*;
+
+
+/**
+ * Lazy query over a collection.
+ *
+ * Stages (filter, map, limit, ...) are only recorded when called. A terminal operation (count, toList, groupBy, ...)
+ * fuses all recorded stages into a single chain of sinks and pushes every element through it in one pass,
+ * so no intermediate collections are created.
+ *
+ * A parallel query splits the source spliterator into chunks that are evaluated on the ForkJoin pool
+ * and merged afterwards. Queries with a limit are always evaluated sequentially.
+ */
+public class Query<T> {
+    private static final int MIN_CHUNK_SIZE = 1024;
+
+    /**
+     * Receives the elements of a pipeline stage. Returns false when no more elements are wanted.
+     */
+    interface Sink<T> {
+        boolean accept(T item);
+    }
+
+    interface IntSink {
+        boolean accept(int value);
+    }
+
+    private final Collection<?> source;
+    private final Function<Sink<? super T>, Sink<Object>> pipeline;
+    private final boolean parallel;
+    private final boolean limited;
+
+    private Query(Collection<?> source, Function<Sink<? super T>, Sink<Object>> pipeline, boolean parallel, boolean limited) {
+        this.source = source;
+        this.pipeline = pipeline;
+        this.parallel = parallel;
+        this.limited = limited;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <T> Query<T> from(Collection<T> source) {
+        return new Query<T>(source, sink -> (Sink<Object>) sink, false, false);
+    }
+
+    public Query<T> parallel() {
+        return new Query<>(source, pipeline, true, limited);
+    }
+
+    public Query<T> sequential() {
+        return new Query<>(source, pipeline, false, limited);
+    }
+
+    public Query<T> filter(Predicate<? super T> predicate) {
+        return new Query<T>(source, sink -> pipeline.apply(item -> !predicate.test(item) || sink.accept(item)), parallel, limited);
+    }
+
+    public <R> Query<R> map(Function<? super T, ? extends R> mapper) {
+        return new Query<R>(source, sink -> pipeline.apply(item -> sink.accept(mapper.apply(item))), parallel, limited);
+    }
+
+    public IntQuery mapToInt(ToIntFunction<? super T> mapper) {
+        return new IntQuery(source, sink -> pipeline.apply(item -> sink.accept(mapper.applyAsInt(item))), parallel, limited);
+    }
+
+    public Query<T> limit(long maxSize) {
+        if (maxSize < 0) {
+            throw new IllegalArgumentException("Limit must not be negative: " + maxSize);
+        }
+
+        return new Query<T>(source, sink -> {
+            long[] seen = new long[1];
+            return pipeline.apply(item -> seen[0] < maxSize && sink.accept(item) && ++seen[0] < maxSize);
+        }, parallel, true);
+    }
+
+    public long count() {
+        return evaluate(() -> new long[1], count -> item -> {
+            count[0]++;
+            return true;
+        }, (a, b) -> {
+            a[0] += b[0];
+            return a;
+        })[0];
+    }
+
+    public void forEach(Consumer<? super T> action) {
+        evaluate(() -> null, ignored -> item -> {
+            action.accept(item);
+            return true;
+        }, (a, b) -> null);
+    }
+
+    public List<T> toList() {
+        return evaluate(ArrayList::new, list -> list::add, (a, b) -> {
+            a.addAll(b);
+            return a;
+        });
+    }
+
+    public <K> Map<K, List<T>> groupBy(Function<? super T, ? extends K> classifier) {
+        return evaluate(HashMap::new, groups -> item -> {
+            groups.computeIfAbsent(classifier.apply(item), key -> new ArrayList<>()).add(item);
+            return true;
+        }, (a, b) -> {
+            b.forEach((key, items) -> a.merge(key, items, (x, y) -> {
+                x.addAll(y);
+                return x;
+            }));
+            return a;
+        });
+    }
+
+    /**
+     * Counts elements per key. Counts are kept in mutable "long[]" cells, so no Long is boxed per element.
+     */
+    public <K> Map<K, Long> countBy(Function<? super T, ? extends K> classifier) {
+        Map<K, long[]> counts = evaluate(HashMap::new, groups -> item -> {
+            groups.computeIfAbsent(classifier.apply(item), key -> new long[1])[0]++;
+            return true;
+        }, (a, b) -> {
+            b.forEach((key, count) -> a.merge(key, count, (x, y) -> {
+                x[0] += y[0];
+                return x;
+            }));
+            return a;
+        });
+
+        Map<K, Long> result = new HashMap<>();
+        counts.forEach((key, count) -> result.put(key, count[0]));
+        return result;
+    }
+
+    private <A> A evaluate(Supplier<A> supplier, Function<A, Sink<? super T>> terminal, BinaryOperator<A> combiner) {
+        return evaluate(source, acc -> pipeline.apply(terminal.apply(acc)), supplier, combiner, parallel && !limited);
+    }
+
+    static <A> A evaluate(Collection<?> source, Function<A, Sink<Object>> chain, Supplier<A> supplier,
+                          BinaryOperator<A> combiner, boolean parallel) {
+        if (!parallel) {
+            A acc = supplier.get();
+            drive(source, chain.apply(acc));
+            return acc;
+        }
+
+        long threshold = Math.max(MIN_CHUNK_SIZE, source.size() / (ForkJoinPool.getCommonPoolParallelism() * 4L));
+        return new ChunkTask<>(source.spliterator(), chain, supplier, combiner, threshold).invoke();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void drive(Collection<?> source, Sink<Object> sink) {
+        if (source instanceof RandomAccess && source instanceof List) {
+            List<Object> list = (List<Object>) source;
+            int size = list.size();
+            for (int i = 0; i < size; i++) {
+                if (!sink.accept(list.get(i))) {
+                    return;
+                }
+            }
+            return;
+        }
+
+        for (Object item : source) {
+            if (!sink.accept(item)) {
+                return;
+            }
+        }
+    }
+
+    private static class ChunkTask<A> extends RecursiveTask<A> {
+        private final Spliterator<?> spliterator;
+        private final Function<A, Sink<Object>> chain;
+        private final Supplier<A> supplier;
+        private final BinaryOperator<A> combiner;
+        private final long threshold;
+
+        ChunkTask(Spliterator<?> spliterator, Function<A, Sink<Object>> chain, Supplier<A> supplier,
+                  BinaryOperator<A> combiner, long threshold) {
+            this.spliterator = spliterator;
+            this.chain = chain;
+            this.supplier = supplier;
+            this.combiner = combiner;
+            this.threshold = threshold;
+        }
+
+        @Override
+        protected A compute() {
+            Spliterator<?> prefix;
+            if (spliterator.estimateSize() > threshold && (prefix = spliterator.trySplit()) != null) {
+                ChunkTask<A> left = new ChunkTask<>(prefix, chain, supplier, combiner, threshold);
+                left.fork();
+                A right = new ChunkTask<>(spliterator, chain, supplier, combiner, threshold).compute();
+                return combiner.apply(left.join(), right);
+            }
+
+            A acc = supplier.get();
+            Sink<Object> sink = chain.apply(acc);
+            spliterator.forEachRemaining(sink::accept);
+            return acc;
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package main.collections.utils;
+
+import jdk.jfr.*;
+
+
+/**
+ * JDK Flight Recorder event for a (modelled) growth of a collection's backing array or hash table.
+ */
+@Name("main.collections.Resize")
+@Label("Collection Resize")
+@Category("Collections")
+@StackTrace(false)
+public class ResizeEvent extends Event {
+    @Label("Collection")
+    String collection;
+
+    @Label("Size")
+    int size;
+
+    @Label("Old Capacity")
+    long oldCapacity;
+
+    @Label("New Capacity")
+    long newCapacity;
+}
@@ -0,0 +1,358 @@
+package main.collections.utils;
+
+import java.security.SecureRandom;
+import java.util.*;
+
+
+/**
+ * Hash map that hashes keys with a per-instance random seed instead of "hashCode()".
+ *
+ * "HashMap" buckets by "hashCode()", so keys with equal hash codes (e.g. "Aa" and "BB", or persons that only hash their name)
+ * all land in one bin, which is treeified into O(log n) lookups, or O(n) for keys that are not Comparable.
+ * Here every key is hashed by a {@link Hasher} keyed with a random 128-bit seed (SipHash-2-4 for strings),
+ * so inputs crafted to collide under "hashCode()" spread evenly and lookups stay O(1).
+ *
+ * Keys still have to implement "equals" consistently with the hasher. Null keys are not allowed.
+ */
+public class SeededHashMap<K, V> extends AbstractMap<K, V> {
+    private static final int INITIAL_CAPACITY = 16;
+    private static final float LOAD_FACTOR = 0.75f;
+    private static final SecureRandom SEEDS = new SecureRandom();
+
+    /**
+     * Keyed hash function, "k0" and "k1" are the seed of the map.
+     */
+    public interface Hasher<K> {
+        long hash(K key, long k0, long k1);
+    }
+
+    public static final Hasher<String> STRINGS = SeededHashMap::sipHash;
+
+    private final Hasher<? super K> hasher;
+    private final long k0;
+    private final long k1;
+    private Node<K, V>[] table;
+    private int size;
+    private int threshold;
+    private int modCount;
+    private Set<Entry<K, V>> entrySet;
+
+    public SeededHashMap(Hasher<? super K> hasher) {
+        this(hasher, INITIAL_CAPACITY);
+    }
+
+    public SeededHashMap(Hasher<? super K> hasher, int initialCapacity) {
+        this.hasher = hasher;
+        this.k0 = SEEDS.nextLong();
+        this.k1 = SEEDS.nextLong();
+        this.table = newTable(tableSizeFor(initialCapacity));
+        this.threshold = (int) (table.length * LOAD_FACTOR);
+    }
+
+    /**
+     * Map for String keys, hashed with SipHash-2-4.
+     */
+    public static <V> SeededHashMap<String, V> forStrings() {
+        return new SeededHashMap<>(STRINGS);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return find(key) != null;
+    }
+
+    @Override
+    public V get(Object key) {
+        Node<K, V> node = find(key);
+        return node == null ? null : node.value;
+    }
+
+    @Override
+    public V put(K key, V value) {
+        long hash = hash(key);
+        int index = index(hash, table.length);
+
+        for (Node<K, V> node = table[index]; node != null; node = node.next) {
+            if (node.hash == hash && key.equals(node.key)) {
+                V old = node.value;
+                node.value = value;
+                return old;
+            }
+        }
+
+        table[index] = new Node<>(hash, key, value, table[index]);
+        modCount++;
+        if (++size > threshold) {
+            resize();
+        }
+
+        return null;
+    }
+
+    @Override
+    public V remove(Object key) {
+        long hash = hash(key);
+        int index = index(hash, table.length);
+
+        Node<K, V> previous = null;
+        for (Node<K, V> node = table[index]; node != null; previous = node, node = node.next) {
+            if (node.hash == hash && key.equals(node.key)) {
+                if (previous == null) {
+                    table[index] = node.next;
+                } else {
+                    previous.next = node.next;
+                }
+                size--;
+                modCount++;
+                return node.value;
+            }
+        }
+
+        return null;
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(table, null);
+        size = 0;
+        modCount++;
+    }
+
+    @Override
+    public Set<Entry<K, V>> entrySet() {
+        if (entrySet == null) {
+            entrySet = new AbstractSet<Entry<K, V>>() {
+                @Override
+                public Iterator<Entry<K, V>> iterator() {
+                    return new EntryIterator();
+                }
+
+                @Override
+                public int size() {
+                    return size;
+                }
+
+                @Override
+                public void clear() {
+                    SeededHashMap.this.clear();
+                }
+            };
+        }
+
+        return entrySet;
+    }
+
+    private Node<K, V> find(Object key) {
+        long hash = hash(key);
+        for (Node<K, V> node = table[index(hash, table.length)]; node != null; node = node.next) {
+            if (node.hash == hash && key.equals(node.key)) {
+                return node;
+            }
+        }
+
+        return null;
+    }
+
+    @SuppressWarnings("unchecked")
+    private long hash(Object key) {
+        if (key == null) {
+            throw new NullPointerException("Null keys are not allowed");
+        }
+
+        return hasher.hash((K) key, k0, k1);
+    }
+
+    private void resize() {
+        Node<K, V>[] old = table;
+        Node<K, V>[] resized = newTable(old.length * 2);
+
+        for (Node<K, V> head : old) {
+            Node<K, V> node = head;
+            while (node != null) {
+                Node<K, V> next = node.next;
+                int index = index(node.hash, resized.length);
+                node.next = resized[index];
+                resized[index] = node;
+                node = next;
+            }
+        }
+
+        table = resized;
+        threshold = (int) (resized.length * LOAD_FACTOR);
+    }
+
+    private static int index(long hash, int length) {
+        return (int) (hash ^ (hash >>> 32)) & (length - 1);
+    }
+
+    private static int tableSizeFor(int capacity) {
+        int size = INITIAL_CAPACITY;
+        while (size * LOAD_FACTOR < capacity) {
+            size <<= 1;
+        }
+
+        return size;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <K, V> Node<K, V>[] newTable(int length) {
+        return (Node<K, V>[]) new Node[length];
+    }
+
+    /**
+     * SipHash-2-4 over the UTF-16 code units of the string, four chars per 64-bit word.
+     */
+    static long sipHash(String s, long k0, long k1) {
+        long v0 = 0x736f6d6570736575L ^ k0;
+        long v1 = 0x646f72616e646f6dL ^ k1;
+        long v2 = 0x6c7967656e657261L ^ k0;
+        long v3 = 0x7465646279746573L ^ k1;
+
+        int length = s.length();
+        int end = length & ~3;
+        for (int i = 0; i < end; i += 4) {
+            long m = s.charAt(i) | (long) s.charAt(i + 1) << 16 | (long) s.charAt(i + 2) << 32 | (long) s.charAt(i + 3) << 48;
+
+            v3 ^= m;
+            for (int round = 0; round < 2; round++) {
+                v0 += v1; v1 = Long.rotateLeft(v1, 13); v1 ^= v0; v0 = Long.rotateLeft(v0, 32);
+                v2 += v3; v3 = Long.rotateLeft(v3, 16); v3 ^= v2;
+                v0 += v3; v3 = Long.rotateLeft(v3, 21); v3 ^= v0;
+                v2 += v1; v1 = Long.rotateLeft(v1, 17); v1 ^= v2; v2 = Long.rotateLeft(v2, 32);
+            }
+            v0 ^= m;
+        }
+
+        long last = (long) (length * 2) << 56;
+        for (int i = end, shift = 0; i < length; i++, shift += 16) {
+            last |= (long) s.charAt(i) << shift;
+        }
+
+        v3 ^= last;
+        for (int round = 0; round < 2; round++) {
+            v0 += v1; v1 = Long.rotateLeft(v1, 13); v1 ^= v0; v0 = Long.rotateLeft(v0, 32);
+            v2 += v3; v3 = Long.rotateLeft(v3, 16); v3 ^= v2;
+            v0 += v3; v3 = Long.rotateLeft(v3, 21); v3 ^= v0;
+            v2 += v1; v1 = Long.rotateLeft(v1, 17); v1 ^= v2; v2 = Long.rotateLeft(v2, 32);
+        }
+        v0 ^= last;
+
+        v2 ^= 0xff;
+        for (int round = 0; round < 4; round++) {
+            v0 += v1; v1 = Long.rotateLeft(v1, 13); v1 ^= v0; v0 = Long.rotateLeft(v0, 32);
+            v2 += v3; v3 = Long.rotateLeft(v3, 16); v3 ^= v2;
+            v0 += v3; v3 = Long.rotateLeft(v3, 21); v3 ^= v0;
+            v2 += v1; v1 = Long.rotateLeft(v1, 17); v1 ^= v2; v2 = Long.rotateLeft(v2, 32);
+        }
+
+        return v0 ^ v1 ^ v2 ^ v3;
+    }
+
+    private static final class Node<K, V> implements Entry<K, V> {
+        private final long hash;
+        private final K key;
+        private V value;
+        private Node<K, V> next;
+
+        Node(long hash, K key, V value, Node<K, V> next) {
+            this.hash = hash;
+            this.key = key;
+            this.value = value;
+            this.next = next;
+        }
+
+        @Override
+        public K getKey() {
+            return key;
+        }
+
+        @Override
+        public V getValue() {
+            return value;
+        }
+
+        @Override
+        public V setValue(V value) {
+            V old = this.value;
+            this.value = value;
+            return old;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Entry)) return false;
+            Entry<?, ?> e = (Entry<?, ?>) obj;
+
+            return key.equals(e.getKey()) && Objects.equals(value, e.getValue());
+        }
+
+        @Override
+        public int hashCode() {
+            return key.hashCode() ^ Objects.hashCode(value);
+        }
+    }
+
+    /**
+     * Fails fast like "HashMap": inserting or removing entries other than through {@link #remove()} invalidates it,
+     * updating the value of an existing key does not.
+     */
+    private final class EntryIterator implements Iterator<Entry<K, V>> {
+        private final Node<K, V>[] iterated = table;
+        private int expectedModCount = modCount;
+        private int index;
+        private Node<K, V> next;
+        private Node<K, V> current;
+
+        EntryIterator() {
+            advance();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public Entry<K, V> next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+
+            current = next;
+            next = next.next;
+            if (next == null) {
+                advance();
+            }
+
+            return current;
+        }
+
+        @Override
+        public void remove() {
+            if (current == null) {
+                throw new IllegalStateException();
+            }
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+
+            SeededHashMap.this.remove(current.key);
+            expectedModCount = modCount;
+            current = null;
+        }
+
+        private void advance() {
+            while (next == null && index < iterated.length) {
+                next = iterated[index++];
+            }
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package main.collections.utils;
+
+import java.util.AbstractSet;
+import java.util.Iterator;
+
+
+/**
+ * Hash set backed by a {@link SeededHashMap}, so elements with colliding "hashCode()" values still spread evenly.
+ */
+public class SeededHashSet<E> extends AbstractSet<E> {
+    private final SeededHashMap<E, Boolean> map;
+
+    public SeededHashSet(SeededHashMap.Hasher<? super E> hasher) {
+        this.map = new SeededHashMap<>(hasher);
+    }
+
+    @Override
+    public boolean add(E item) {
+        return map.put(item, Boolean.TRUE) == null;
+    }
+
+    @Override
+    public boolean remove(Object item) {
+        return map.remove(item) != null;
+    }
+
+    @Override
+    public boolean contains(Object item) {
+        return map.containsKey(item);
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        return map.keySet().iterator();
+    }
+
+    @Override
+    public int size() {
+        return map.size();
+    }
+
+    @Override
+    public void clear() {
+        map.clear();
+    }
+}
@@ -0,0 +1,358 @@
+package main.collections.utils;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
+
+
+/**
+ * Map partitioned by key hash into shards, each owned by one worker thread that keeps its entries in a plain "HashMap".
+ *
+ * Only the owner touches a shard's HashMap, so there are no CAS loops or shared cache lines on the entries themselves.
+ * Other threads send operations to the owner through a lock-free queue ("ConcurrentLinkedQueue"); the owner drains it in
+ * batches of up to {@link #BATCH_SIZE} and parks when it is empty. Callers get a "CompletableFuture" ({@link #getAsync},
+ * {@link #putAllAsync}, ...), the "Map" methods wait for it. Code already running on the owner thread (e.g. inside
+ * {@link #execute}) takes the synchronous fast path and accesses the shard directly.
+ *
+ * Operations running on a shard must not wait for another shard synchronously, since both owners could end up waiting
+ * for each other; use the async methods there. "size()" is maintained by the owners and may lag behind in-flight operations,
+ * "entrySet()" is a snapshot. Null keys are not allowed. The workers are daemon threads, {@link #close()} stops them.
+ */
+public class ShardedMap<K, V> extends AbstractMap<K, V> implements AutoCloseable {
+    static final int BATCH_SIZE = 256;
+
+    private final Shard<K, V>[] shards;
+
+    @SuppressWarnings("unchecked")
+    public ShardedMap(int shardCount) {
+        if (shardCount <= 0) {
+            throw new IllegalArgumentException("Shard count must be positive: " + shardCount);
+        }
+
+        shards = (Shard<K, V>[]) new Shard[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new Shard<>("ShardedMap-" + i);
+        }
+        for (Shard<K, V> shard : shards) {
+            shard.owner.start();
+        }
+    }
+
+    public int getShardCount() {
+        return shards.length;
+    }
+
+    /**
+     * True if the current thread owns the shard of the key, so operations on it run synchronously.
+     */
+    public boolean isOwner(Object key) {
+        return shard(key).owner == Thread.currentThread();
+    }
+
+    /**
+     * Runs the operation on the shard owning the key, with that shard's entries as argument.
+     */
+    public <R> CompletableFuture<R> execute(Object key, Function<? super Map<K, V>, ? extends R> operation) {
+        return shard(key).submit(operation);
+    }
+
+    public CompletableFuture<V> getAsync(Object key) {
+        return execute(key, map -> map.get(key));
+    }
+
+    public CompletableFuture<V> putAsync(K key, V value) {
+        return execute(key, map -> map.put(key, value));
+    }
+
+    public CompletableFuture<V> removeAsync(Object key) {
+        return execute(key, map -> map.remove(key));
+    }
+
+    /**
+     * Looks up all keys with a single queued operation per shard. Missing keys are left out of the result.
+     */
+    public CompletableFuture<Map<K, V>> getAllAsync(Collection<? extends K> keys) {
+        List<List<K>> batches = partition(keys);
+
+        List<CompletableFuture<Map<K, V>>> futures = new ArrayList<>();
+        for (int i = 0; i < shards.length; i++) {
+            List<K> batch = batches.get(i);
+            if (batch != null) {
+                futures.add(shards[i].submit(map -> {
+                    Map<K, V> found = new HashMap<>();
+                    for (K key : batch) {
+                        V value = map.get(key);
+                        if (value != null) {
+                            found.put(key, value);
+                        }
+                    }
+                    return found;
+                }));
+            }
+        }
+
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).thenApply(done -> {
+            Map<K, V> result = new HashMap<>();
+            for (CompletableFuture<Map<K, V>> future : futures) {
+                result.putAll(future.join());
+            }
+            return result;
+        });
+    }
+
+    /**
+     * Stores all entries with a single queued operation per shard.
+     */
+    public CompletableFuture<Void> putAllAsync(Map<? extends K, ? extends V> entries) {
+        List<List<K>> batches = partition(entries.keySet());
+
+        List<CompletableFuture<?>> futures = new ArrayList<>();
+        for (int i = 0; i < shards.length; i++) {
+            List<K> batch = batches.get(i);
+            if (batch != null) {
+                List<V> values = new ArrayList<>(batch.size());
+                for (K key : batch) {
+                    values.add(entries.get(key));
+                }
+
+                futures.add(shards[i].submit(map -> {
+                    for (int j = 0; j < batch.size(); j++) {
+                        map.put(batch.get(j), values.get(j));
+                    }
+                    return null;
+                }));
+            }
+        }
+
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]));
+    }
+
+    @Override
+    public V get(Object key) {
+        return join(getAsync(key));
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return join(execute(key, map -> map.containsKey(key)));
+    }
+
+    @Override
+    public V put(K key, V value) {
+        return join(putAsync(key, value));
+    }
+
+    @Override
+    public V remove(Object key) {
+        return join(removeAsync(key));
+    }
+
+    @Override
+    public void putAll(Map<? extends K, ? extends V> entries) {
+        join(putAllAsync(entries));
+    }
+
+    @Override
+    public void clear() {
+        List<CompletableFuture<?>> futures = new ArrayList<>();
+        for (Shard<K, V> shard : shards) {
+            futures.add(shard.submit(map -> {
+                map.clear();
+                return null;
+            }));
+        }
+
+        join(CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])));
+    }
+
+    @Override
+    public int size() {
+        int size = 0;
+        for (Shard<K, V> shard : shards) {
+            size += shard.size;
+        }
+
+        return size;
+    }
+
+    /**
+     * Snapshot of all entries, modifying it does not change the map.
+     */
+    @Override
+    public Set<Entry<K, V>> entrySet() {
+        List<CompletableFuture<List<Entry<K, V>>>> futures = new ArrayList<>();
+        for (Shard<K, V> shard : shards) {
+            futures.add(shard.submit(map -> {
+                List<Entry<K, V>> entries = new ArrayList<>(map.size());
+                for (Entry<K, V> e : map.entrySet()) {
+                    entries.add(new SimpleImmutableEntry<>(e));
+                }
+                return entries;
+            }));
+        }
+
+        Set<Entry<K, V>> snapshot = new LinkedHashSet<>();
+        for (CompletableFuture<List<Entry<K, V>>> future : futures) {
+            snapshot.addAll(join(future));
+        }
+
+        return Collections.unmodifiableSet(snapshot);
+    }
+
+    /**
+     * Stops the workers once the operations already queued are done. Operations submitted afterwards fail
+     * with an "IllegalStateException".
+     */
+    @Override
+    public void close() {
+        for (Shard<K, V> shard : shards) {
+            shard.running = false;
+            LockSupport.unpark(shard.owner);
+        }
+
+        for (Shard<K, V> shard : shards) {
+            if (shard.owner != Thread.currentThread()) {
+                try {
+                    shard.owner.join();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+
+                // Nothing should be left once the owner is gone, but never leave a caller waiting.
+                for (Task<K, V, ?> task; (task = shard.queue.poll()) != null; ) {
+                    task.fail();
+                }
+            }
+        }
+    }
+
+    private Shard<K, V> shard(Object key) {
+        return shards[shardIndex(key)];
+    }
+
+    private int shardIndex(Object key) {
+        if (key == null) {
+            throw new NullPointerException("Null keys are not allowed");
+        }
+
+        int h = key.hashCode();
+        h ^= h >>> 16;
+        return (h & 0x7fffffff) % shards.length;
+    }
+
+    private List<List<K>> partition(Collection<? extends K> keys) {
+        List<List<K>> batches = new ArrayList<>(Collections.nCopies(shards.length, (List<K>) null));
+        for (K key : keys) {
+            int index = shardIndex(key);
+            if (batches.get(index) == null) {
+                batches.set(index, new ArrayList<>());
+            }
+            batches.get(index).add(key);
+        }
+
+        return batches;
+    }
+
+    private static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private static final class Shard<K, V> implements Runnable {
+        private final Map<K, V> map = new HashMap<>();
+        private final ConcurrentLinkedQueue<Task<K, V, ?>> queue = new ConcurrentLinkedQueue<>();
+        private final Thread owner;
+        private volatile boolean running = true;
+        private volatile boolean sleeping;
+        private volatile int size;
+
+        Shard(String name) {
+            owner = new Thread(this, name);
+            owner.setDaemon(true);
+        }
+
+        <R> CompletableFuture<R> submit(Function<? super Map<K, V>, ? extends R> operation) {
+            Task<K, V, R> task = new Task<>(operation);
+
+            if (Thread.currentThread() == owner) {
+                task.run(this);
+                return task.future;
+            }
+            if (!running) {
+                throw new IllegalStateException("ShardedMap is closed");
+            }
+
+            queue.offer(task);
+            // "close()" may have stopped the owner between the check above and the offer. If the task is still
+            // queued, nobody will run it; if it is gone, the owner took it and completes it before exiting.
+            if (!running && queue.remove(task)) {
+                task.fail();
+                return task.future;
+            }
+            if (sleeping) {
+                LockSupport.unpark(owner);
+            }
+
+            return task.future;
+        }
+
+        @Override
+        public void run() {
+            while (running || !queue.isEmpty()) {
+                Task<K, V, ?> task = queue.poll();
+                if (task == null) {
+                    // Announce the park before the last check, so a producer either sees "sleeping" or we see its task.
+                    sleeping = true;
+                    if (running && queue.isEmpty()) {
+                        LockSupport.park(this);
+                    }
+                    sleeping = false;
+                    continue;
+                }
+
+                int batch = 0;
+                do {
+                    task.run(this);
+                } while (++batch < BATCH_SIZE && (task = queue.poll()) != null);
+            }
+        }
+    }
+
+    private static final class Task<K, V, R> {
+        private final Function<? super Map<K, V>, ? extends R> operation;
+        private final CompletableFuture<R> future = new CompletableFuture<>();
+
+        Task(Function<? super Map<K, V>, ? extends R> operation) {
+            this.operation = operation;
+        }
+
+        void run(Shard<K, V> shard) {
+            try {
+                R result = operation.apply(shard.map);
+                shard.size = shard.map.size();
+                future.complete(result);
+            } catch (Throwable e) {
+                // Errors too: the owner keeps serving the shard, so later callers are not left waiting.
+                shard.size = shard.map.size();
+                future.completeExceptionally(e);
+            }
+        }
+
+        void fail() {
+            future.completeExceptionally(new IllegalStateException("ShardedMap is closed"));
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package main.collections.utils;
+
+import jdk.jfr.*;
+
+
+/**
+ * JDK Flight Recorder event for a collection operation slower than {@link CollectionMetrics#getSlowThresholdNanos()}.
+ */
+@Name("main.collections.SlowOperation")
+@Label("Slow Collection Operation")
+@Category("Collections")
+@StackTrace(false)
+public class SlowOperationEvent extends Event {
+    @Label("Collection")
+    String collection;
+
+    @Label("Operation")
+    String operation;
+
+    @Label("Size")
+    int size;
+
+    @Label("Latency")
+    @Timespan(Timespan.NANOSECONDS)
+    long latency;
+}